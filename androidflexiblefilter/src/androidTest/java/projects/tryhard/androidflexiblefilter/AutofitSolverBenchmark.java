@@ -0,0 +1,68 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compare time per autofit of both solver modes, run it on a device and read the results from logcat with tag "AutofitBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class AutofitSolverBenchmark {
+    private static final String TAG = "AutofitBenchmark";
+    private static final int WARM_UP = 200;
+    private static final int ITERATIONS = 2000;
+    private static final String[] LABELS = new String[]{
+            "S(12)", "M(340)", "XL(1024)", "Very long brand name(77)", "Another quite long option label that wraps(5)"
+    };
+
+    @Test
+    public void compareSolvers() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                Context context = InstrumentationRegistry.getTargetContext();
+                for (int maxLines = 1; maxLines <= 2; maxLines++) {
+                    long bisection = timePerAutofit(context, AutofitHelper.SolverMode.BISECTION, maxLines);
+                    long iterative = timePerAutofit(context, AutofitHelper.SolverMode.ITERATIVE, maxLines);
+                    Log.i(TAG, "maxLines=" + maxLines + " bisection=" + bisection + "ns iterative=" + iterative + "ns");
+                    assertTrue(bisection > 0 && iterative > 0);
+                }
+            }
+        });
+    }
+
+    private long timePerAutofit(Context context, AutofitHelper.SolverMode solverMode, int maxLines) {
+        AutofitTextView autofitTextView = new AutofitTextView(context);
+        autofitTextView.setMaxLines(maxLines);
+        autofitTextView.setTextSize(40);
+        autofitTextView.getAutofitHelper().setSolverMode(solverMode);
+        autofitTextView.measure(View.MeasureSpec.makeMeasureSpec(200, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        autofitTextView.layout(0, 0, 200, autofitTextView.getMeasuredHeight());
+
+        for (int i = 0; i < WARM_UP; i++) {
+            autofit(autofitTextView, i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            autofit(autofitTextView, i);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    /**
+     * Setting text autofits, clear the cache first so we time the solver instead of the cache.
+     */
+    private void autofit(AutofitTextView autofitTextView, int i) {
+        AutofitHelper.clearSizeCache();
+        autofitTextView.setText(LABELS[i % LABELS.length]);
+    }
+}
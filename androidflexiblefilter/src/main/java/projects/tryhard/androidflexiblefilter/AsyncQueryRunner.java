@@ -0,0 +1,111 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import projects.tryhard.androidflexiblefilter.FlexibleFilter.QueryEvaluator;
+import projects.tryhard.androidflexiblefilter.FlexibleFilter.QueryResultCallback;
+
+/**
+ * Evaluate queries on a worker thread, one at a time. A new query cancels the one running, so only the result of
+ * the latest selections is delivered.
+ */
+final class AsyncQueryRunner<R> {
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    /**
+     * Get called on the main thread with the latest result, before the callback of the user.
+     */
+    interface Delivery<R> {
+        void deliver(QueryResult<R> result, QueryResultCallback<R> callback);
+    }
+
+    private final QueryEvaluator<R> mQueryEvaluator;
+    private final QueryResultCallback<R> mQueryResultCallback;
+    private final Delivery<R> mDelivery;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private QueryResult<R> mRunningResult;
+
+    AsyncQueryRunner(QueryEvaluator<R> queryEvaluator, QueryResultCallback<R> queryResultCallback, Delivery<R> delivery) {
+        this.mQueryEvaluator = queryEvaluator;
+        this.mQueryResultCallback = queryResultCallback;
+        this.mDelivery = delivery;
+    }
+
+    /**
+     * Start a query for the selections, cancel the one still running. Call it on the main thread.
+     */
+    void run(SelectionSnapshot selections) {
+        cancel();
+
+        final QueryResult<R> result = new QueryResult<>(selections);
+        mRunningResult = result;
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) return;
+                try {
+                    mQueryEvaluator.evaluate(result.getSelections(), result);
+                } catch (final RuntimeException e) {
+                    // Throw it on the main thread, like an evaluator run there would.
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            throw e;
+                        }
+                    });
+                    return;
+                }
+                if (result.isCancelled()) return;
+
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Cancelled while waiting for the main thread.
+                        if (result.isCancelled() || result != mRunningResult) return;
+                        mRunningResult = null;
+                        mDelivery.deliver(result, mQueryResultCallback);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drop the query running, if any.
+     */
+    void cancel() {
+        // Queued runs of it are dropped when they start, the evaluator checks isCancelled() itself.
+        if (mRunningResult != null) {
+            mRunningResult.cancel();
+            mRunningResult = null;
+        }
+    }
+
+    /**
+     * One thread shared by every filter, it's only alive while there is work.
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FlexibleFilter-Query");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+}
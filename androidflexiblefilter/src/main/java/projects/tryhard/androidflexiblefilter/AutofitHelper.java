@@ -3,9 +3,11 @@ package projects.tryhard.androidflexiblefilter;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Typeface;
 import android.os.Build;
 import android.text.Editable;
 import android.text.Layout;
+import android.text.Spanned;
 import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextWatcher;
@@ -14,11 +16,13 @@ import android.text.method.TransformationMethod;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.TypedValue;
 import android.view.View;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Locale;
 
 /**
  * A helper class to enable automatically resizing {@link TextView}`s {@code textSize} to fit
@@ -37,6 +41,32 @@ public class AutofitHelper {
     private static final int DEFAULT_MIN_TEXT_SIZE = 8; //sp
     // How precise we want to be when reaching the target textWidth size
     private static final float DEFAULT_PRECISION = 0.5f;
+    // How many solved text sizes we remember
+    static final int DEFAULT_SIZE_CACHE_SIZE = 256;
+
+    /**
+     * Solved text sizes shared by every helper, options often have the same text, width and paint.
+     */
+    private static final LruCache<SizeKey, Float> sSizeCache = new LruCache<>(DEFAULT_SIZE_CACHE_SIZE);
+
+    /**
+     * How the text size is found.
+     */
+    public enum SolverMode {
+        /**
+         * Recursive binary search, a new {@link StaticLayout} for every step.
+         */
+        BISECTION,
+        /**
+         * One width measure for single line text, a loop of bisection for multi-line text.
+         */
+        ITERATIVE
+    }
+
+    /**
+     * Solver mode for helpers created from now on.
+     */
+    private static SolverMode sDefaultSolverMode = SolverMode.BISECTION;
     // Attributes
     private TextView mTextView;
     private TextPaint mPaint;
@@ -48,6 +78,10 @@ public class AutofitHelper {
     private float mMinTextSize;
     private float mMaxTextSize;
     private float mPrecision;
+    private SolverMode mSolverMode;
+    private AutofitSolver mSolver = new AutofitSolver();
+    private AutofitSolver.TextMeasurer mTextMeasurer;
+    private FilterMetrics mFilterMetrics = FilterMetrics.NONE;
     private boolean mEnabled;
     private boolean mIsAutofitting;
     private ArrayList<OnTextSizeChangeListener> mListeners;
@@ -61,12 +95,14 @@ public class AutofitHelper {
 
         mTextView = view;
         mPaint = new TextPaint();
+        mTextMeasurer = new PaintTextMeasurer(mPaint);
         setRawTextSize(view.getTextSize());
 
         mMaxLines = getMaxLines(view);
         mMinTextSize = scaledDensity * DEFAULT_MIN_TEXT_SIZE;
         mMaxTextSize = mTextSize;
         mPrecision = DEFAULT_PRECISION;
+        mSolverMode = sDefaultSolverMode;
     }
 
     /**
@@ -120,7 +156,9 @@ public class AutofitHelper {
      * Re-sizes the textSize of the TextView so that the text fits within the bounds of the View.
      */
     private static void autofit(TextView view, TextPaint paint, float minTextSize, float maxTextSize,
-                                int maxLines, float precision) {
+                                int maxLines, float precision, SolverMode solverMode,
+                                AutofitSolver solver, AutofitSolver.TextMeasurer textMeasurer,
+                                FilterMetrics filterMetrics) {
         if (maxLines <= 0 || maxLines == Integer.MAX_VALUE) {
             // Don't auto-size since there's no limit on lines.
             return;
@@ -139,31 +177,90 @@ public class AutofitHelper {
 
         Context context = view.getContext();
         Resources r = Resources.getSystem();
-        DisplayMetrics displayMetrics;
 
+        if (context != null) {
+            r = context.getResources();
+        }
+
+        paint.set(view.getPaint());
+
+        float size = getFitTextSize(text, paint, targetWidth, maxLines, minTextSize, maxTextSize,
+                precision, solverMode, solver, textMeasurer, r.getDisplayMetrics(), filterMetrics);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
+    }
+
+    /**
+     * Find the text size fitting the text in the target width, from the shared cache if solved before.
+     */
+    private static float getFitTextSize(CharSequence text, TextPaint paint, int targetWidth,
+                                        int maxLines, float minTextSize, float maxTextSize,
+                                        float precision, SolverMode solverMode,
+                                        AutofitSolver solver, AutofitSolver.TextMeasurer textMeasurer,
+                                        DisplayMetrics displayMetrics, FilterMetrics filterMetrics) {
+        boolean isMetered = filterMetrics != FilterMetrics.NONE;
+        long start = isMetered ? System.nanoTime() : 0;
         float size = maxTextSize;
         float high = size;
         float low = 0;
 
-        if (context != null) {
-            r = context.getResources();
+        // Styled text can't be told apart by its string, don't cache it.
+        SizeKey key = null;
+        if (isPlainText(text)) {
+            key = new SizeKey(text.toString(), paint, targetWidth, maxLines, minTextSize,
+                    maxTextSize, precision, solverMode);
+            Float cachedSize = sSizeCache.get(key);
+            if (cachedSize != null) {
+                if (isMetered) {
+                    filterMetrics.autofitSolved(System.nanoTime() - start, true);
+                }
+                return cachedSize;
+            }
         }
-        displayMetrics = r.getDisplayMetrics();
 
-        paint.set(view.getPaint());
-        paint.setTextSize(size);
+        if (solverMode == SolverMode.ITERATIVE) {
+            size = solver.solve(textMeasurer, text, targetWidth, maxLines, maxTextSize, precision);
+        } else {
+            paint.setTextSize(size);
 
-        if ((maxLines == 1 && paint.measureText(text, 0, text.length()) > targetWidth)
-                || getLineCount(text, paint, size, targetWidth, displayMetrics) > maxLines) {
-            size = getAutofitTextSize(text, paint, targetWidth, maxLines, low, high, precision,
-                    displayMetrics);
+            if ((maxLines == 1 && paint.measureText(text, 0, text.length()) > targetWidth)
+                    || getLineCount(text, paint, size, targetWidth, displayMetrics) > maxLines) {
+                size = getAutofitTextSize(text, paint, targetWidth, maxLines, low, high, precision,
+                        displayMetrics);
+            }
         }
 
         if (size < minTextSize) {
             size = minTextSize;
         }
 
-        view.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
+        if (key != null) {
+            sSizeCache.put(key, size);
+        }
+        if (isMetered) {
+            filterMetrics.autofitSolved(System.nanoTime() - start, false);
+        }
+        return size;
+    }
+
+    /**
+     * Returns how many times a solved text size was found in the shared cache.
+     */
+    public static int getSizeCacheHitCount() {
+        return sSizeCache.hitCount();
+    }
+
+    /**
+     * Returns how many times a text size had to be solved because it wasn't in the shared cache.
+     */
+    public static int getSizeCacheMissCount() {
+        return sSizeCache.missCount();
+    }
+
+    /**
+     * Forget every solved text size, e.g. after fonts or font scale changed.
+     */
+    public static void clearSizeCache() {
+        sSizeCache.evictAll();
     }
 
     /**
@@ -226,6 +323,17 @@ public class AutofitHelper {
         }
     }
 
+    /**
+     * @return true if the text has no styles, precomputed text of a plain string is still plain.
+     */
+    private static boolean isPlainText(CharSequence text) {
+        if (!(text instanceof Spanned)) {
+            return true;
+        }
+        Spanned spanned = (Spanned) text;
+        return spanned.nextSpanTransition(0, spanned.length(), Object.class) >= spanned.length();
+    }
+
     private static int getLineCount(CharSequence text, TextPaint paint, float size, float width,
                                     DisplayMetrics displayMetrics) {
         paint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_PX, size,
@@ -295,6 +403,62 @@ public class AutofitHelper {
         return this;
     }
 
+    /**
+     * Returns how this helper finds the text size.
+     */
+    public SolverMode getSolverMode() {
+        return mSolverMode;
+    }
+
+    /**
+     * Set how this helper finds the text size.
+     *
+     * @param solverMode The solver to use.
+     */
+    public AutofitHelper setSolverMode(SolverMode solverMode) {
+        if (mSolverMode != solverMode) {
+            mSolverMode = solverMode;
+
+            autofit();
+        }
+        return this;
+    }
+
+    /**
+     * Sets where every text size found by this helper is reported, {@link FilterMetrics#NONE} to stop.
+     */
+    void setFilterMetrics(FilterMetrics filterMetrics) {
+        mFilterMetrics = filterMetrics;
+    }
+
+    /**
+     * Returns the solver mode given to helpers when they are created.
+     */
+    public static SolverMode getDefaultSolverMode() {
+        return sDefaultSolverMode;
+    }
+
+    /**
+     * Set the solver mode given to helpers created from now on, existing helpers keep theirs.
+     */
+    public static void setDefaultSolverMode(SolverMode solverMode) {
+        sDefaultSolverMode = solverMode;
+    }
+
+    /**
+     * Take a snapshot of the settings and paint of this helper, to solve text sizes for it off the UI thread.
+     */
+    Prefetcher newPrefetcher() {
+        Context context = mTextView.getContext();
+        Resources r = Resources.getSystem();
+
+        if (context != null) {
+            r = context.getResources();
+        }
+        return new Prefetcher(new TextPaint(mTextView.getPaint()), mMinTextSize, mMaxTextSize,
+                mMaxLines, mPrecision, mSolverMode, r.getDisplayMetrics());
+    }
+
     /**
      * Returns the minimum size (in pixels) of the text.
      */
@@ -474,6 +638,16 @@ public class AutofitHelper {
         setRawTextSize(TypedValue.applyDimension(unit, size, r.getDisplayMetrics()));
     }
 
+    /**
+     * Show a text size solved by a {@link Prefetcher} before the text is set, so the text is laid out once in it.
+     * Autofit finds the same size later and leaves the view alone. The original text size is kept.
+     */
+    void applyPrefetchedTextSize(float size) {
+        mIsAutofitting = true;
+        mTextView.setTextSize(TypedValue.COMPLEX_UNIT_PX, size);
+        mIsAutofitting = false;
+    }
+
     private void setRawTextSize(float size) {
         if (mTextSize != size) {
             mTextSize = size;
@@ -481,16 +655,22 @@ public class AutofitHelper {
     }
 
     private void autofit() {
-        float oldTextSize = mTextView.getTextSize();
-        float textSize;
-
-        mIsAutofitting = true;
-        autofit(mTextView, mPaint, mMinTextSize, mMaxTextSize, mMaxLines, mPrecision);
-        mIsAutofitting = false;
-
-        textSize = mTextView.getTextSize();
-        if (textSize != oldTextSize) {
-            sendTextSizeChange(textSize, oldTextSize);
+        FilterTrace.Tracer tracer = FilterTrace.begin("AutofitHelper.autofit");
+        try {
+            float oldTextSize = mTextView.getTextSize();
+            float textSize;
+
+            mIsAutofitting = true;
+            autofit(mTextView, mPaint, mMinTextSize, mMaxTextSize, mMaxLines, mPrecision, mSolverMode,
+                    mSolver, mTextMeasurer, mFilterMetrics);
+            mIsAutofitting = false;
+
+            textSize = mTextView.getTextSize();
+            if (textSize != oldTextSize) {
+                sendTextSizeChange(textSize, oldTextSize);
+            }
+        } finally {
+            FilterTrace.end(tracer);
         }
     }
 
@@ -516,6 +696,186 @@ public class AutofitHelper {
         void onTextSizeChange(float textSize, float oldTextSize);
     }
 
+    /**
+     * Everything that decides the autofit text size, the paint's text size isn't part of it since we always
+     * start from {@code maxTextSize}.
+     */
+    private static final class SizeKey {
+        private final String mText;
+        private final Typeface mTypeface;
+        private final int mPaintFlags;
+        private final float mTextScaleX;
+        private final float mTextSkewX;
+        private final float mLetterSpacing;
+        private final Locale mTextLocale;
+        private final String mFontFeatureSettings;
+        private final int mTargetWidth;
+        private final int mMaxLines;
+        private final float mMinTextSize;
+        private final float mMaxTextSize;
+        private final float mPrecision;
+        private final SolverMode mSolverMode;
+        private final int mHashCode;
+
+        SizeKey(String text, TextPaint paint, int targetWidth, int maxLines, float minTextSize,
+                float maxTextSize, float precision, SolverMode solverMode) {
+            mText = text;
+            mTypeface = paint.getTypeface();
+            mPaintFlags = paint.getFlags();
+            mTextScaleX = paint.getTextScaleX();
+            mTextSkewX = paint.getTextSkewX();
+            mTextLocale = paint.getTextLocale();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                mLetterSpacing = paint.getLetterSpacing();
+                mFontFeatureSettings = paint.getFontFeatureSettings();
+            } else {
+                mLetterSpacing = 0;
+                mFontFeatureSettings = null;
+            }
+            mTargetWidth = targetWidth;
+            mMaxLines = maxLines;
+            mMinTextSize = minTextSize;
+            mMaxTextSize = maxTextSize;
+            mPrecision = precision;
+            mSolverMode = solverMode;
+
+            int result = mText.hashCode();
+            result = 31 * result + (mTypeface != null ? mTypeface.hashCode() : 0);
+            result = 31 * result + mPaintFlags;
+            result = 31 * result + Float.floatToIntBits(mTextScaleX);
+            result = 31 * result + Float.floatToIntBits(mTextSkewX);
+            result = 31 * result + Float.floatToIntBits(mLetterSpacing);
+            result = 31 * result + (mTextLocale != null ? mTextLocale.hashCode() : 0);
+            result = 31 * result + (mFontFeatureSettings != null ? mFontFeatureSettings.hashCode() : 0);
+            result = 31 * result + mTargetWidth;
+            result = 31 * result + mMaxLines;
+            result = 31 * result + Float.floatToIntBits(mMinTextSize);
+            result = 31 * result + Float.floatToIntBits(mMaxTextSize);
+            result = 31 * result + Float.floatToIntBits(mPrecision);
+            result = 31 * result + mSolverMode.hashCode();
+            mHashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SizeKey)) return false;
+            SizeKey other = (SizeKey) o;
+            return mHashCode == other.mHashCode
+                    && mTargetWidth == other.mTargetWidth
+                    && mMaxLines == other.mMaxLines
+                    && mPaintFlags == other.mPaintFlags
+                    && Float.compare(mTextScaleX, other.mTextScaleX) == 0
+                    && Float.compare(mTextSkewX, other.mTextSkewX) == 0
+                    && Float.compare(mLetterSpacing, other.mLetterSpacing) == 0
+                    && Float.compare(mMinTextSize, other.mMinTextSize) == 0
+                    && Float.compare(mMaxTextSize, other.mMaxTextSize) == 0
+                    && Float.compare(mPrecision, other.mPrecision) == 0
+                    && mSolverMode == other.mSolverMode
+                    && (mTypeface != null ? mTypeface.equals(other.mTypeface) : other.mTypeface == null)
+                    && (mTextLocale != null ? mTextLocale.equals(other.mTextLocale) : other.mTextLocale == null)
+                    && (mFontFeatureSettings != null ? mFontFeatureSettings.equals(other.mFontFeatureSettings)
+                    : other.mFontFeatureSettings == null)
+                    && mText.equals(other.mText);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    /**
+     * Solves text sizes ahead of time into the shared cache, so the views autofitting later with the same text,
+     * paint and width only need a cache lookup. Each prefetcher has its own paint, so it can be used on any thread,
+     * but only one thread at a time.
+     */
+    static final class Prefetcher {
+        /**
+         * The text won't be autofitted, it keeps the text size of the view.
+         */
+        static final float NOT_FITTED = -1;
+
+        private final TextPaint mPaint;
+        private final float mMinTextSize;
+        private final float mMaxTextSize;
+        private final int mMaxLines;
+        private final float mPrecision;
+        private final SolverMode mSolverMode;
+        private final DisplayMetrics mDisplayMetrics;
+        private final AutofitSolver mSolver = new AutofitSolver();
+        private final AutofitSolver.TextMeasurer mTextMeasurer;
+
+        private Prefetcher(TextPaint paint, float minTextSize, float maxTextSize, int maxLines,
+                           float precision, SolverMode solverMode, DisplayMetrics displayMetrics) {
+            mPaint = paint;
+            mMinTextSize = minTextSize;
+            mMaxTextSize = maxTextSize;
+            mMaxLines = maxLines;
+            mPrecision = precision;
+            mSolverMode = solverMode;
+            mDisplayMetrics = displayMetrics;
+            mTextMeasurer = new PaintTextMeasurer(mPaint);
+        }
+
+        /**
+         * @param targetWidth The width for text, which is the view's width without padding.
+         * @return The text size in pixels the text will be autofitted to, {@link #NOT_FITTED} if it won't be.
+         */
+        float prefetch(CharSequence text, int targetWidth) {
+            if (mMaxLines <= 0 || mMaxLines == Integer.MAX_VALUE || targetWidth <= 0) {
+                return NOT_FITTED;
+            }
+            return getFitTextSize(text, mPaint, targetWidth, mMaxLines, mMinTextSize, mMaxTextSize,
+                    mPrecision, mSolverMode, mSolver, mTextMeasurer, mDisplayMetrics, FilterMetrics.NONE);
+        }
+    }
+
+    /**
+     * Measures with the helper's paint, used by {@link SolverMode#ITERATIVE}.
+     */
+    private static final class PaintTextMeasurer implements AutofitSolver.TextMeasurer {
+        private final TextPaint mPaint;
+
+        PaintTextMeasurer(TextPaint paint) {
+            mPaint = paint;
+        }
+
+        @Override
+        public float measureWidth(CharSequence text, float textSize) {
+            mPaint.setTextSize(textSize);
+            return mPaint.measureText(text, 0, text.length());
+        }
+
+        @Override
+        public int measureLines(CharSequence text, float textSize, int width,
+                                float[] outMaxLineWidth) {
+            mPaint.setTextSize(textSize);
+            StaticLayout layout;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                // Builders are pooled by the framework, obtain() reuses them.
+                layout = StaticLayout.Builder.obtain(text, 0, text.length(), mPaint, width)
+                        .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                        .setLineSpacing(0.0f, 1.0f)
+                        .setIncludePad(true)
+                        .build();
+            } else {
+                layout = new StaticLayout(text, mPaint, width, Layout.Alignment.ALIGN_NORMAL,
+                        1.0f, 0.0f, true);
+            }
+
+            int lineCount = layout.getLineCount();
+            float maxLineWidth = 0;
+            for (int i = 0; i < lineCount; i++) {
+                if (layout.getLineWidth(i) > maxLineWidth) {
+                    maxLineWidth = layout.getLineWidth(i);
+                }
+            }
+            outMaxLineWidth[0] = maxLineWidth;
+            return lineCount;
+        }
+    }
+
     private class AutofitTextWatcher implements TextWatcher {
         @Override
         public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {
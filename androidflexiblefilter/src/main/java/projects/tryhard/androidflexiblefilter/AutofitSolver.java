@@ -0,0 +1,83 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * An iterative solver for the autofit text size, used by {@link AutofitHelper.SolverMode#ITERATIVE}.
+ * It doesn't know about Android views, all measuring goes through a {@link TextMeasurer}.
+ */
+final class AutofitSolver {
+
+    /**
+     * Measures text for the solver.
+     */
+    interface TextMeasurer {
+        /**
+         * @return The width of the text in one line at the text size.
+         */
+        float measureWidth(CharSequence text, float textSize);
+
+        /**
+         * Lay the text out in the width at the text size.
+         *
+         * @param outMaxLineWidth Gets the width of the widest line at index 0.
+         * @return How many lines the text takes.
+         */
+        int measureLines(CharSequence text, float textSize, int width, float[] outMaxLineWidth);
+    }
+
+    private final float[] mMaxLineWidth = new float[1];
+
+    /**
+     * Find the largest text size no larger than maxTextSize which fits the text in maxLines lines of targetWidth.
+     * Doesn't apply min text size.
+     */
+    float solve(TextMeasurer measurer, CharSequence text, int targetWidth, int maxLines,
+                float maxTextSize, float precision) {
+        if (maxLines == 1) {
+            return solveSingleLine(measurer, text, targetWidth, maxTextSize, precision);
+        }
+        return solveMultiLine(measurer, text, targetWidth, maxLines, maxTextSize, precision);
+    }
+
+    /**
+     * Text width grows linearly with text size, so one measure gives the answer. Hinting can make it a little
+     * wider than linear, step down by precision until it fits.
+     */
+    private float solveSingleLine(TextMeasurer measurer, CharSequence text, int targetWidth,
+                                  float maxTextSize, float precision) {
+        float width = measurer.measureWidth(text, maxTextSize);
+        if (width <= targetWidth) {
+            return maxTextSize;
+        }
+
+        float size = maxTextSize * targetWidth / width;
+        while (size > precision && measurer.measureWidth(text, size) > targetWidth) {
+            size -= precision;
+        }
+        return Math.max(size, 0);
+    }
+
+    /**
+     * Bisection in a loop, the largest size found fitting is kept.
+     */
+    private float solveMultiLine(TextMeasurer measurer, CharSequence text, int targetWidth,
+                                 int maxLines, float maxTextSize, float precision) {
+        float[] maxLineWidth = mMaxLineWidth;
+        int lineCount = measurer.measureLines(text, maxTextSize, targetWidth, maxLineWidth);
+        if (lineCount <= maxLines && maxLineWidth[0] <= targetWidth) {
+            return maxTextSize;
+        }
+
+        float low = 0;
+        float high = maxTextSize;
+        while (high - low >= precision) {
+            float mid = (low + high) / 2.0f;
+            lineCount = measurer.measureLines(text, mid, targetWidth, maxLineWidth);
+            if (lineCount > maxLines || maxLineWidth[0] > targetWidth) {
+                high = mid;
+            } else {
+                low = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,627 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Count options of a {@link FlexibleFilter} from your items, so you don't need to count them by hand.
+ * Set it up like this:
+ * 1. Add all the filters and options to the {@link FlexibleFilter} first.
+ * 2. Add a facet for every filter you want to count with {@link #addFacet(int, Class, KeyExtractor)}, or with
+ * {@link #addRangeFacet(int, RangeBuckets, ValueExtractor)} for a filter of number ranges.
+ * 3. Give the items by {@link #setItems(List)}.
+ * --- Set up done. Every time an option is selected, counts of all facets are updated for the new selections,
+ * and you can get the items match all the selections by {@link #getMatchingItems()}, or go through their ids
+ * by {@link #getMatchingIds()} without making a list.
+ * <p>
+ * The count of an option is how many items have that key and match selections of all the other facets,
+ * so users can see how many items they get if they pick it.
+ * <p>
+ * When items come and go, tell the engine by {@link #itemAdded(Object)}, {@link #itemRemoved(Object)} and
+ * {@link #itemChanged(Object, Object)}, only counts of that item are changed, and filters are updated once in the next frame.
+ * Items should be unique by {@link Object#equals(Object)}. Call everything on the main thread.
+ *
+ * @param <I> Class of your items.
+ */
+public class FacetEngine<I> {
+    /**
+     * Item has no option in a facet, or nothing is selected in a facet.
+     */
+    private static final int NO_OPTION = -1;
+
+    /**
+     * Get the key of an item in a facet, which is the filterId of the option the item belongs to.
+     *
+     * @param <I> Class of your items.
+     * @param <S> Class of the option's unique ID.
+     */
+    public interface KeyExtractor<I, S> {
+        /**
+         * @return The filterId of the option, null or an ID not in the filter means the item has no option.
+         */
+        @Nullable
+        S getKey(I item);
+    }
+
+    /**
+     * Get the number of an item in a range facet.
+     *
+     * @param <I> Class of your items.
+     */
+    public interface ValueExtractor<I> {
+        /**
+         * @return The number of the item, NaN means the item has no option.
+         */
+        double getValue(I item);
+    }
+
+    private FlexibleFilter<?> mFlexibleFilter;
+    private List<Facet<I, ?>> mFacets = new ArrayList<>();
+    /**
+     * Items by their ids, a removed item leaves a null so ids of the others don't change.
+     */
+    private List<I> mItems = new ArrayList<>();
+    private Map<I, Integer> mItemIds = new HashMap<>();
+    /**
+     * Ids of all the items, the id of an item is its position in the list given, added items get the next ids.
+     */
+    private IdBitmap mAllIds = new IdBitmap();
+    /**
+     * How many facets every item doesn't match their selections, the item is a result when it's 0.
+     */
+    private int[] mMismatchCounts = new int[0];
+    /**
+     * Items whose match changed by a selection, kept to not allocate on every click.
+     */
+    private int[] mChangedItems = new int[0];
+    private boolean mIsPushScheduled = false;
+
+    private Choreographer.FrameCallback mPushCountsFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsPushScheduled = false;
+            pushCounts();
+        }
+    };
+
+    private FilterHolder.SelectionListener mSelectionListener = new FilterHolder.SelectionListener() {
+        @Override
+        public void selectionChanged(FilterHolder<?> filterHolder) {
+            Facet<I, ?> facet = getFacet(filterHolder);
+            if (facet != null) {
+                applySelection(facet);
+            }
+        }
+    };
+
+    public FacetEngine(FlexibleFilter<?> flexibleFilter) {
+        this.mFlexibleFilter = flexibleFilter;
+    }
+
+    /**
+     * Count a filter by the key of items.
+     *
+     * @param filterNum     The filter to count.
+     * @param filterIdClass Class of the option's unique ID of the filter.
+     * @param keyExtractor  Get the filterId of the option an item belongs to.
+     */
+    public <S> void addFacet(int filterNum, Class<S> filterIdClass, KeyExtractor<I, S> keyExtractor) {
+        FilterHolder<S> filterHolder = mFlexibleFilter.getFilter(filterNum, filterIdClass);
+        if (filterHolder == null) return;
+
+        mFacets.add(new Facet<>(filterHolder, keyExtractor));
+        filterHolder.addSelectionListener(mSelectionListener);
+        reindex();
+    }
+
+    /**
+     * Count a filter by a number of items, every option is a bucket of the numbers. Add options with filterIds
+     * from {@link RangeBuckets#getRanges()} to the filter first.
+     *
+     * @param filterNum      The filter to count, its filterIds are {@link NumericRange}.
+     * @param buckets        How the numbers are split.
+     * @param valueExtractor Get the number of an item.
+     */
+    public void addRangeFacet(int filterNum, RangeBuckets buckets, ValueExtractor<I> valueExtractor) {
+        FilterHolder<NumericRange> filterHolder = mFlexibleFilter.getFilter(filterNum, NumericRange.class);
+        if (filterHolder == null) return;
+
+        mFacets.add(new RangeFacet<>(filterHolder, buckets, valueExtractor));
+        filterHolder.addSelectionListener(mSelectionListener);
+        reindex();
+    }
+
+    /**
+     * Count items of a range facet in a run of buckets, counted like the options so selections of the other facets
+     * apply. Items are only counted by bucket, so a range is given by buckets, it's O(log n) of the buckets.
+     *
+     * @param filterNum  The filter added by {@link #addRangeFacet(int, RangeBuckets, ValueExtractor)}.
+     * @param fromBucket The first bucket, an index of {@link RangeBuckets#getRanges()}.
+     * @param toBucket   The last bucket, included.
+     * @return The count, 0 if there is no such range facet.
+     * @throws IllegalArgumentException If the buckets are not in the facet, or toBucket is before fromBucket.
+     */
+    public int getRangeCount(int filterNum, int fromBucket, int toBucket) {
+        for (int i = 0; i < mFacets.size(); i++) {
+            Facet<I, ?> facet = mFacets.get(i);
+            if (facet instanceof RangeFacet && facet.mFilterHolder.getFilterNum() == filterNum) {
+                return ((RangeFacet<I>) facet).getCount(fromBucket, toBucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Replace all the items, every facet get counted again.
+     */
+    public void setItems(List<I> items) {
+        mItems = new ArrayList<>(items);
+        reindex();
+    }
+
+    /**
+     * Index the items again, call it if you added options after the items are set.
+     */
+    public void reindex() {
+        int itemCount = mItems.size();
+        for (int i = 0; i < mFacets.size(); i++) {
+            mFacets.get(i).index(mItems);
+        }
+
+        mAllIds = new IdBitmap();
+        mItemIds = new HashMap<>(itemCount * 2);
+        mMismatchCounts = new int[itemCount];
+        mChangedItems = new int[itemCount];
+        for (int item = 0; item < itemCount; item++) {
+            if (mItems.get(item) == null) continue;
+            mAllIds.add(item);
+            mItemIds.put(mItems.get(item), item);
+            mMismatchCounts[item] = countMismatches(item);
+            contribute(item, 1);
+        }
+        pushCounts();
+    }
+
+    /**
+     * A new item comes in, it gets the next id.
+     */
+    public void itemAdded(I item) {
+        int id = mItems.size();
+        mItems.add(item);
+        mItemIds.put(item, id);
+        ensureCapacity(id + 1);
+        mAllIds.add(id);
+
+        for (int i = 0; i < mFacets.size(); i++) {
+            mFacets.get(i).setItemOption(id, item);
+        }
+        mMismatchCounts[id] = countMismatches(id);
+        contribute(id, 1);
+        schedulePushCounts();
+    }
+
+    /**
+     * An item is gone, its id won't be used again until {@link #setItems(List)}.
+     *
+     * @return false if there is no such item.
+     */
+    public boolean itemRemoved(I item) {
+        Integer id = mItemIds.remove(item);
+        if (id == null) return false;
+
+        contribute(id, -1);
+        for (int i = 0; i < mFacets.size(); i++) {
+            mFacets.get(i).clearItemOption(id);
+        }
+        mAllIds.remove(id);
+        mItems.set(id, null);
+        schedulePushCounts();
+        return true;
+    }
+
+    /**
+     * An item is replaced by a new one, it keeps the same id.
+     *
+     * @return false if there is no such item.
+     */
+    public boolean itemChanged(I oldItem, I newItem) {
+        Integer id = mItemIds.remove(oldItem);
+        if (id == null) return false;
+
+        contribute(id, -1);
+        mItems.set(id, newItem);
+        mItemIds.put(newItem, id);
+        for (int i = 0; i < mFacets.size(); i++) {
+            Facet<I, ?> facet = mFacets.get(i);
+            facet.clearItemOption(id);
+            facet.setItemOption(id, newItem);
+        }
+        mMismatchCounts[id] = countMismatches(id);
+        contribute(id, 1);
+        schedulePushCounts();
+        return true;
+    }
+
+    /**
+     * @return Items match the selections of every facet, in the order they are given.
+     */
+    public List<I> getMatchingItems() {
+        List<I> matchingItems = new ArrayList<>();
+        IdIterator iterator = getMatchingIds();
+        while (iterator.hasNext()) {
+            matchingItems.add(mItems.get(iterator.next()));
+        }
+        return matchingItems;
+    }
+
+    /**
+     * Ids of items match the selections of every facet, in ascending order. Get the items by {@link #getItem(int)}.
+     * Don't change the items while going through it.
+     */
+    public IdIterator getMatchingIds() {
+        return getMatchingIdBitmap().iterator();
+    }
+
+    /**
+     * @return How many items match the selections of every facet.
+     */
+    public int getMatchingCount() {
+        List<IdBitmap> selectedIds = getSelectedIds();
+        if (selectedIds.size() == 2) {
+            // Count without making the intersection.
+            return selectedIds.get(0).andCardinality(selectedIds.get(1));
+        }
+        return intersect(selectedIds).cardinality();
+    }
+
+    /**
+     * @param id An id from {@link #getMatchingIds()}.
+     */
+    public I getItem(int id) {
+        return mItems.get(id);
+    }
+
+    private IdBitmap getMatchingIdBitmap() {
+        return intersect(getSelectedIds());
+    }
+
+    /**
+     * @return Ids of the selected option of every facet with a selection.
+     */
+    private List<IdBitmap> getSelectedIds() {
+        List<IdBitmap> selectedIds = new ArrayList<>();
+        for (int i = 0; i < mFacets.size(); i++) {
+            IdBitmap ids = mFacets.get(i).getSelectedIds();
+            if (ids != null) {
+                selectedIds.add(ids);
+            }
+        }
+        return selectedIds;
+    }
+
+    /**
+     * Start from the smallest one so the result stays small.
+     */
+    private IdBitmap intersect(List<IdBitmap> selectedIds) {
+        if (selectedIds.isEmpty()) {
+            return mAllIds;
+        }
+
+        int smallest = 0;
+        for (int i = 1; i < selectedIds.size(); i++) {
+            if (selectedIds.get(i).cardinality() < selectedIds.get(smallest).cardinality()) {
+                smallest = i;
+            }
+        }
+        IdBitmap result = selectedIds.get(smallest);
+        for (int i = 0; i < selectedIds.size() && !result.isEmpty(); i++) {
+            if (i != smallest) {
+                result = result.and(selectedIds.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Only items whose match of the facet changed are counted again, the rest of the counts are kept.
+     */
+    private void applySelection(Facet<I, ?> facet) {
+        BitSet selected = facet.mFilterHolder.getSelectedPositions();
+        if (selected.equals(facet.mSelected)) return;
+
+        int changedCount;
+        if (!facet.mSelected.isEmpty() && !selected.isEmpty()) {
+            // Only items of the options toggled change, they are all we need to go through.
+            BitSet toggled = (BitSet) selected.clone();
+            toggled.xor(facet.mSelected);
+            changedCount = 0;
+            for (int i = toggled.nextSetBit(0); i >= 0 && i < facet.mPostings.length; i = toggled.nextSetBit(i + 1)) {
+                changedCount = removeChangedItems(facet.mPostings[i].iterator(), changedCount);
+            }
+        } else {
+            changedCount = 0;
+            IdIterator iterator = mAllIds.iterator();
+            while (iterator.hasNext()) {
+                int item = iterator.next();
+                int option = facet.mItemOptions[item];
+                boolean isMatched = facet.matches(item);
+                boolean willMatch = selected.isEmpty() || (option != NO_OPTION && selected.get(option));
+                if (isMatched != willMatch) {
+                    contribute(item, -1);
+                    mChangedItems[changedCount++] = item;
+                }
+            }
+        }
+
+        facet.mSelected = selected;
+        for (int i = 0; i < changedCount; i++) {
+            int item = mChangedItems[i];
+            mMismatchCounts[item] += facet.matches(item) ? -1 : 1;
+            contribute(item, 1);
+        }
+        pushCounts();
+    }
+
+    /**
+     * Take items out of counts and keep them in {@link #mChangedItems}.
+     *
+     * @return The count of changed items after adding these.
+     */
+    private int removeChangedItems(IdIterator iterator, int changedCount) {
+        while (iterator.hasNext()) {
+            int item = iterator.next();
+            contribute(item, -1);
+            mChangedItems[changedCount++] = item;
+        }
+        return changedCount;
+    }
+
+    private void ensureCapacity(int itemCount) {
+        if (itemCount <= mMismatchCounts.length) return;
+
+        int capacity = Math.max(itemCount, mMismatchCounts.length * 2);
+        mMismatchCounts = Arrays.copyOf(mMismatchCounts, capacity);
+        mChangedItems = new int[capacity];
+        for (int i = 0; i < mFacets.size(); i++) {
+            mFacets.get(i).ensureCapacity(capacity);
+        }
+    }
+
+    private int countMismatches(int item) {
+        int mismatchCount = 0;
+        for (int i = 0; i < mFacets.size(); i++) {
+            if (!mFacets.get(i).matches(item)) {
+                mismatchCount++;
+            }
+        }
+        return mismatchCount;
+    }
+
+    /**
+     * Add or remove an item from counts. An item is counted in a facet when it matches all the other facets.
+     */
+    private void contribute(int item, int delta) {
+        int mismatchCount = mMismatchCounts[item];
+        if (mismatchCount > 1) return;
+
+        for (int i = 0; i < mFacets.size(); i++) {
+            Facet<I, ?> facet = mFacets.get(i);
+            int option = facet.mItemOptions[item];
+            if (option == NO_OPTION) continue;
+            // With one mismatch, it's only counted in the facet it doesn't match.
+            if (mismatchCount == 0 || !facet.matches(item)) {
+                facet.addCount(option, delta);
+            }
+        }
+    }
+
+    /**
+     * Changes of items can come many at once, only give the counts in the next frame.
+     */
+    private void schedulePushCounts() {
+        if (mIsPushScheduled) return;
+        mIsPushScheduled = true;
+        Choreographer.getInstance().postFrameCallback(mPushCountsFrameCallback);
+    }
+
+    /**
+     * Give the counts to filters, all of them are updated and laid out once.
+     */
+    private void pushCounts() {
+        mFlexibleFilter.beginUpdate();
+        try {
+            for (int i = 0; i < mFacets.size(); i++) {
+                Facet<I, ?> facet = mFacets.get(i);
+                if (facet.mIsCountChanged) {
+                    facet.mFilterHolder.setCounts(facet.mCounts);
+                    mFlexibleFilter.updateFilter(facet.mFilterHolder);
+                    facet.mIsCountChanged = false;
+                }
+            }
+        } finally {
+            mFlexibleFilter.commitUpdate();
+        }
+    }
+
+    @Nullable
+    private Facet<I, ?> getFacet(FilterHolder<?> filterHolder) {
+        for (int i = 0; i < mFacets.size(); i++) {
+            if (mFacets.get(i).mFilterHolder == filterHolder) {
+                return mFacets.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A filter counted by the engine.
+     */
+    private static class Facet<I, S> {
+        private final FilterHolder<S> mFilterHolder;
+        private final KeyExtractor<I, S> mKeyExtractor;
+        /**
+         * Option position of every item, {@link #NO_OPTION} if it has none.
+         */
+        private int[] mItemOptions = new int[0];
+        /**
+         * Count of every option position, the default all option isn't counted here.
+         */
+        private int[] mCounts = new int[0];
+        /**
+         * Ids of items of every option position.
+         */
+        private IdBitmap[] mPostings = new IdBitmap[0];
+        /**
+         * Option positions selected, empty if the facet has no selection.
+         */
+        private BitSet mSelected = new BitSet();
+        private boolean mIsCountChanged = false;
+
+        Facet(FilterHolder<S> filterHolder, KeyExtractor<I, S> keyExtractor) {
+            this.mFilterHolder = filterHolder;
+            this.mKeyExtractor = keyExtractor;
+        }
+
+        void index(List<I> items) {
+            int optionCount = mFilterHolder.getOptions().size();
+            mPostings = new IdBitmap[optionCount];
+            for (int i = 0; i < optionCount; i++) {
+                mPostings[i] = new IdBitmap();
+            }
+            mItemOptions = new int[items.size()];
+            for (int item = 0; item < items.size(); item++) {
+                mItemOptions[item] = NO_OPTION;
+                if (items.get(item) != null) {
+                    setItemOption(item, items.get(item));
+                }
+            }
+            mCounts = new int[optionCount];
+            mSelected = mFilterHolder.getSelectedPositions();
+            mIsCountChanged = true;
+        }
+
+        void setItemOption(int id, I item) {
+            int option = getOptionPosition(item);
+            mItemOptions[id] = option;
+            if (option != NO_OPTION) {
+                mPostings[option].add(id);
+            }
+        }
+
+        void clearItemOption(int id) {
+            int option = mItemOptions[id];
+            if (option != NO_OPTION) {
+                mPostings[option].remove(id);
+            }
+            mItemOptions[id] = NO_OPTION;
+        }
+
+        void ensureCapacity(int capacity) {
+            if (capacity > mItemOptions.length) {
+                mItemOptions = Arrays.copyOf(mItemOptions, capacity);
+            }
+        }
+
+        void addCount(int option, int delta) {
+            mCounts[option] += delta;
+            mIsCountChanged = true;
+        }
+
+        int getOptionPosition(I item) {
+            S key = mKeyExtractor.getKey(item);
+            if (key == null) {
+                return NO_OPTION;
+            }
+            int position = mFilterHolder.getOptionPosition(key);
+            // Position 0 is the default all option.
+            return position <= 0 ? NO_OPTION : position;
+        }
+
+        /**
+         * @return Ids of items of any selected option, null if nothing is selected.
+         */
+        @Nullable
+        IdBitmap getSelectedIds() {
+            if (mSelected.isEmpty()) {
+                return null;
+            }
+            List<IdBitmap> postings = new ArrayList<>();
+            for (int i = mSelected.nextSetBit(0); i >= 0 && i < mPostings.length; i = mSelected.nextSetBit(i + 1)) {
+                postings.add(mPostings[i]);
+            }
+            if (postings.size() == 1) {
+                return postings.get(0);
+            }
+            // Union of all the selected options in one pass.
+            return IdBitmap.or(postings);
+        }
+
+        boolean matches(int item) {
+            if (mSelected.isEmpty()) {
+                return true;
+            }
+            int option = mItemOptions[item];
+            return option != NO_OPTION && mSelected.get(option);
+        }
+    }
+
+    /**
+     * A facet of numbers, it also keeps counts by bucket to sum counts of a range of buckets.
+     */
+    private static final class RangeFacet<I> extends Facet<I, NumericRange> {
+        private final RangeBuckets mBuckets;
+        /**
+         * Bucket of every option position, -1 if the option isn't a bucket.
+         */
+        private int[] mOptionBuckets = new int[0];
+        private FenwickTree mBucketCounts = new FenwickTree(0);
+
+        RangeFacet(FilterHolder<NumericRange> filterHolder, final RangeBuckets buckets, final ValueExtractor<I> valueExtractor) {
+            super(filterHolder, new KeyExtractor<I, NumericRange>() {
+                @Override
+                public NumericRange getKey(I item) {
+                    int bucket = buckets.getBucket(valueExtractor.getValue(item));
+                    return bucket == -1 ? null : buckets.getRanges().get(bucket);
+                }
+            });
+            this.mBuckets = buckets;
+        }
+
+        @Override
+        void index(List<I> items) {
+            List<Option<NumericRange>> options = super.mFilterHolder.getOptions();
+            mOptionBuckets = new int[options.size()];
+            for (int i = 0; i < options.size(); i++) {
+                NumericRange range = options.get(i).getFilterId();
+                // Position 0 is the default all option.
+                mOptionBuckets[i] = i == 0 || range == null ? -1 : mBuckets.getBucket(range);
+            }
+            mBucketCounts = new FenwickTree(mBuckets.getBucketCount());
+            super.index(items);
+        }
+
+        @Override
+        void addCount(int option, int delta) {
+            super.addCount(option, delta);
+            int bucket = mOptionBuckets[option];
+            if (bucket != -1) {
+                mBucketCounts.add(bucket, delta);
+            }
+        }
+
+        int getCount(int fromBucket, int toBucket) {
+            if (fromBucket < 0 || toBucket >= mBuckets.getBucketCount() || toBucket < fromBucket) {
+                throw new IllegalArgumentException("No buckets from " + fromBucket + " to " + toBucket
+                        + " in " + mBuckets.getBucketCount() + " buckets");
+            }
+            return mBucketCounts.rangeSum(fromBucket, toBucket + 1);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * Counts of a row of buckets, changing a count and summing the counts of a run of buckets are both O(log n).
+ */
+final class FenwickTree {
+    /**
+     * 1-based, every node keeps the sum of the buckets below it.
+     */
+    private final int[] mTree;
+
+    FenwickTree(int size) {
+        mTree = new int[size + 1];
+    }
+
+    int size() {
+        return mTree.length - 1;
+    }
+
+    void add(int index, int delta) {
+        for (int i = index + 1; i < mTree.length; i += i & -i) {
+            mTree[i] += delta;
+        }
+    }
+
+    /**
+     * @return Sum of buckets from 0 to end, end not included.
+     */
+    int prefixSum(int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += mTree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return Sum of buckets from start to end, end not included.
+     */
+    int rangeSum(int start, int end) {
+        if (start >= end) {
+            return 0;
+        }
+        return prefixSum(end) - prefixSum(start);
+    }
+}
@@ -0,0 +1,178 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.DrawableRes;
+
+/**
+ * How options of one {@link FlexibleFilter} look and behave. It can't be changed, make a new one by {@link #buildUpon()}
+ * and set it by {@link FlexibleFilter#setConfig(FilterConfig)}, so every filter on a screen has its own.
+ */
+public final class FilterConfig {
+    public static final FilterConfig DEFAULT = new Builder().build();
+
+    @ColorRes
+    private final int mSelectedTextColor;
+    @ColorRes
+    private final int mUnSelectedTextColor;
+    @DrawableRes
+    private final int mSelectedBackground;
+    @DrawableRes
+    private final int mUnSelectedBackground;
+    private final boolean mShouldHideAll;
+    private final boolean mShouldHideZeroFilters;
+    private final boolean mChangeColorWhenSelect;
+
+    private FilterConfig(Builder builder) {
+        this.mSelectedTextColor = builder.mSelectedTextColor;
+        this.mUnSelectedTextColor = builder.mUnSelectedTextColor;
+        this.mSelectedBackground = builder.mSelectedBackground;
+        this.mUnSelectedBackground = builder.mUnSelectedBackground;
+        this.mShouldHideAll = builder.mShouldHideAll;
+        this.mShouldHideZeroFilters = builder.mShouldHideZeroFilters;
+        this.mChangeColorWhenSelect = builder.mChangeColorWhenSelect;
+    }
+
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    @ColorRes
+    public int getSelectedTextColor() {
+        return mSelectedTextColor;
+    }
+
+    @ColorRes
+    public int getUnSelectedTextColor() {
+        return mUnSelectedTextColor;
+    }
+
+    @DrawableRes
+    public int getSelectedBackground() {
+        return mSelectedBackground;
+    }
+
+    @DrawableRes
+    public int getUnSelectedBackground() {
+        return mUnSelectedBackground;
+    }
+
+    /**
+     * @return true to hide the default added all option.
+     */
+    public boolean isShouldHideAll() {
+        return mShouldHideAll;
+    }
+
+    /**
+     * @return true to hide all the options that are 0.
+     */
+    public boolean isShouldHideZeroFilters() {
+        return mShouldHideZeroFilters;
+    }
+
+    /**
+     * @return true to change the color of an option when it's selected.
+     */
+    public boolean isChangeColorWhenSelect() {
+        return mChangeColorWhenSelect;
+    }
+
+    /**
+     * @return true if options have the same colors and backgrounds with both configs, so they don't need to be styled again.
+     */
+    boolean hasSameStyle(FilterConfig other) {
+        return mSelectedTextColor == other.mSelectedTextColor
+                && mUnSelectedTextColor == other.mUnSelectedTextColor
+                && mSelectedBackground == other.mSelectedBackground
+                && mUnSelectedBackground == other.mUnSelectedBackground;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FilterConfig)) return false;
+        FilterConfig other = (FilterConfig) o;
+        return hasSameStyle(other)
+                && mShouldHideAll == other.mShouldHideAll
+                && mShouldHideZeroFilters == other.mShouldHideZeroFilters
+                && mChangeColorWhenSelect == other.mChangeColorWhenSelect;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSelectedTextColor;
+        result = 31 * result + mUnSelectedTextColor;
+        result = 31 * result + mSelectedBackground;
+        result = 31 * result + mUnSelectedBackground;
+        result = 31 * result + (mShouldHideAll ? 1 : 0);
+        result = 31 * result + (mShouldHideZeroFilters ? 1 : 0);
+        result = 31 * result + (mChangeColorWhenSelect ? 1 : 0);
+        return result;
+    }
+
+    public static final class Builder {
+        @ColorRes
+        private int mSelectedTextColor = R.color.white;
+        @ColorRes
+        private int mUnSelectedTextColor = R.color.black;
+        @DrawableRes
+        private int mSelectedBackground = R.drawable.filter_selector_default_selected;
+        @DrawableRes
+        private int mUnSelectedBackground = R.drawable.filter_selector_default_not_selected;
+        private boolean mShouldHideAll = false;
+        private boolean mShouldHideZeroFilters = false;
+        private boolean mChangeColorWhenSelect = true;
+
+        public Builder() {
+        }
+
+        private Builder(FilterConfig config) {
+            this.mSelectedTextColor = config.mSelectedTextColor;
+            this.mUnSelectedTextColor = config.mUnSelectedTextColor;
+            this.mSelectedBackground = config.mSelectedBackground;
+            this.mUnSelectedBackground = config.mUnSelectedBackground;
+            this.mShouldHideAll = config.mShouldHideAll;
+            this.mShouldHideZeroFilters = config.mShouldHideZeroFilters;
+            this.mChangeColorWhenSelect = config.mChangeColorWhenSelect;
+        }
+
+        public Builder setSelectedTextColor(@ColorRes int selectedTextColor) {
+            this.mSelectedTextColor = selectedTextColor;
+            return this;
+        }
+
+        public Builder setUnSelectedTextColor(@ColorRes int unSelectedTextColor) {
+            this.mUnSelectedTextColor = unSelectedTextColor;
+            return this;
+        }
+
+        public Builder setSelectedBackground(@DrawableRes int selectedBackground) {
+            this.mSelectedBackground = selectedBackground;
+            return this;
+        }
+
+        public Builder setUnSelectedBackground(@DrawableRes int unSelectedBackground) {
+            this.mUnSelectedBackground = unSelectedBackground;
+            return this;
+        }
+
+        public Builder setShouldHideAll(boolean shouldHideAll) {
+            this.mShouldHideAll = shouldHideAll;
+            return this;
+        }
+
+        public Builder setShouldHideZeroFilters(boolean shouldHideZeroFilters) {
+            this.mShouldHideZeroFilters = shouldHideZeroFilters;
+            return this;
+        }
+
+        public Builder setChangeColorWhenSelect(boolean changeColorWhenSelect) {
+            this.mChangeColorWhenSelect = changeColorWhenSelect;
+            return this;
+        }
+
+        public FilterConfig build() {
+            return new FilterConfig(this);
+        }
+    }
+}
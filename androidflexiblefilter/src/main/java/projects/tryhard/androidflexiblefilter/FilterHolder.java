@@ -10,38 +10,93 @@ import android.view.ViewGroup;
 import com.google.android.flexbox.FlexboxLayout;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Map;
 
 import projects.tryhard.androidflexiblefilter.FlexibleFilter.FilterClickCallback;
+import projects.tryhard.androidflexiblefilter.FlexibleFilter.MultiSelectCallback;
 
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mChangeColorWhenSelect;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mShouldHideAll;
 
 /**
  * Use to hold things we need for a filter.
  */
 public class FilterHolder<T> {
+    /**
+     * Get called when the selected option changed, by a click or by code.
+     */
+    interface SelectionListener {
+        void selectionChanged(FilterHolder<?> filterHolder);
+    }
+
     private int mFilterNum;
     private List<Option<T>> mOptions;
+    /**
+     * Position of every option in {@link #mOptions} by its filterId, so we don't need to compare every option to find one.
+     */
+    private Map<T, Integer> mOptionPositions = new HashMap<>();
     private FlexboxLayout mContainer;
     private int mHeight = 0;
     private T mCurrentSelected = null;
+    /**
+     * Position of {@link #mCurrentSelected}, -1 means nothing selected.
+     */
+    private int mSelectedPosition = -1;
+    /**
+     * Position of the option currently drawn as selected, -1 means none.
+     */
+    private int mDecoratedPosition = -1;
+    /**
+     * In multi-select mode, clicking an option toggles it and many options can be selected.
+     */
+    private boolean mIsMultiSelect = false;
+    /**
+     * Positions of selected options in multi-select mode, {@link #mCurrentSelected} is the first of them.
+     */
+    private BitSet mSelectedPositions = new BitSet();
     private View mEmptyView;
+    /**
+     * Shows the options in {@link FlexibleFilter.ContainerMode#RECYCLED} mode, null when options are children of {@link #mContainer}.
+     */
+    @Nullable
+    private OptionAdapter<T> mOptionAdapter;
 
     private FilterClickCallback<T> mFilterClickCallback;
+    private MultiSelectCallback<T> mMultiSelectCallback;
+    private List<SelectionListener> mSelectionListeners = new ArrayList<>();
 
     private boolean mIsRemoved = false;
 
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private Future mGetHeightRunnableFuture = null;
-
-    FilterHolder(int filterNum, List<Option<T>> mOptions, FlexboxLayout mContainer, View emptyView) {
+    /**
+     * Shared by all the filters of a {@link FlexibleFilter}, heights are taken on the main thread.
+     */
+    private HeightMeasurer mHeightMeasurer;
+    /**
+     * Config and style shared by all the filters of a {@link FlexibleFilter}.
+     */
+    private OptionStyleCache mOptionStyleCache;
+    private HeightCache mHeightCache = new HeightCache();
+    /**
+     * Where {@link #revealNextOption()} looks for the next hidden option.
+     */
+    private int mRevealPosition = 0;
+    /**
+     * Style and text generations the heights in {@link #mHeightCache} are measured with.
+     */
+    private int mHeightCacheStyleGeneration;
+    private int mHeightCacheTextGeneration;
+
+    FilterHolder(int filterNum, List<Option<T>> mOptions, FlexboxLayout mContainer, View emptyView, HeightMeasurer heightMeasurer,
+                 OptionStyleCache optionStyleCache) {
         this.mFilterNum = filterNum;
+        this.mHeightMeasurer = heightMeasurer;
+        this.mOptionStyleCache = optionStyleCache;
+        this.mHeightCacheStyleGeneration = optionStyleCache.getGeneration();
+        this.mHeightCacheTextGeneration = optionStyleCache.getTextGeneration();
         this.mOptions = mOptions;
         this.mContainer = mContainer;
         this.mEmptyView = emptyView;
@@ -54,54 +109,93 @@ public class FilterHolder<T> {
         setContainerVisible(false);
     }
 
-    Option getFilterButton(T filterId) {
-        for (int i = 0; i < mOptions.size(); i++) {
-            if (mOptions.get(i).getFilterId().equals(filterId)) {
-                return mOptions.get(i);
-            }
+    Option<T> getFilterButton(T filterId) {
+        int pos = getOptionPosition(filterId);
+        if (pos == -1) {
+            return mOptions.get(0);
         }
-        return mOptions.get(0);
+        return mOptions.get(pos);
     }
 
-    void updateAll() {
-        if (mOptions.size() == 0) return;
+    /**
+     * @return The position of the option, -1 if there is no such option.
+     */
+    int getOptionPosition(T filterId) {
+        Integer pos = mOptionPositions.get(filterId);
+        if (pos == null) {
+            return -1;
+        }
+        return pos;
+    }
 
-        boolean isEveryOptionCountZero = true;
-        int sum = 0;
-        for (int i = 0; i < mOptions.size(); i++) {
-            if (i != 0) {
-                // Don't need to add default all.
-                sum += mOptions.get(i).getResultCount();
+    /**
+     * Update counts of many options at once.
+     *
+     * @param counts Count for every option filterId you want to update.
+     * @return false if some filterIds don't belong to this filter, they will be skipped.
+     */
+    boolean updateCounts(Map<T, Integer> counts) {
+        boolean isAllFound = true;
+        for (Map.Entry<T, Integer> entry : counts.entrySet()) {
+            int pos = getOptionPosition(entry.getKey());
+            if (pos == -1) {
+                isAllFound = false;
+            } else {
+                mOptions.get(pos).setResultCount(entry.getValue(), false);
             }
+        }
+        return isAllFound;
+    }
 
-            if (sum > 0) {
-                isEveryOptionCountZero = false;
-            }
+    /**
+     * Set counts of options by their positions, the default all option is skipped since it's the sum.
+     */
+    void setCounts(int[] counts) {
+        int size = Math.min(counts.length, mOptions.size());
+        for (int i = 1; i < size; i++) {
+            mOptions.get(i).setResultCount(counts[i], false);
+        }
+    }
 
-            if (mCurrentSelected != null && mCurrentSelected.equals(mOptions.get(i).getFilterId())) {
-                mOptions.get(i).invalidate(true);
-            } else {
-                mOptions.get(i).invalidate(false);
+    /**
+     * @return How many options really changed.
+     */
+    int updateAll() {
+        if (mOptions.size() == 0) return 0;
+
+        int sum = 0;
+        // Don't need to add default all.
+        for (int i = 1; i < mOptions.size(); i++) {
+            sum += mOptions.get(i).getResultCount();
+        }
+        boolean isEveryOptionCountZero = sum <= 0;
+        // Set the count of all before invalidate, so it only get drawn once.
+        mOptions.get(0).setResultCount(sum, false);
+
+        int touchedOptionCount = 0;
+        for (int i = 0; i < mOptions.size(); i++) {
+            if (mOptions.get(i).invalidate(isPositionSelected(i))) {
+                touchedOptionCount++;
             }
         }
-        mOptions.get(0).setResultCount(sum);
+        mDecoratedPosition = isChangeColorWhenSelect() ? mSelectedPosition : -1;
 
-        if (isEveryOptionCountZero && mShouldHideAll) {
+        if (isEveryOptionCountZero && mOptionStyleCache.getConfig().isShouldHideAll()) {
             mEmptyView.setVisibility(VISIBLE);
         } else {
             mEmptyView.setVisibility(GONE);
         }
 
+        if (mOptionAdapter != null) {
+            mOptionAdapter.refresh();
+        }
         mContainer.invalidate();
+        return touchedOptionCount;
     }
 
     void setOptionVisible(int pos, boolean visible) {
         if (pos < mOptions.size()) {
-            if (visible) {
-                mOptions.get(pos).getAutofitTextView().setVisibility(VISIBLE);
-            } else {
-                mOptions.get(pos).getAutofitTextView().setVisibility(GONE);
-            }
+            mOptions.get(pos).setVisible(visible);
         }
     }
 
@@ -109,10 +203,35 @@ public class FilterHolder<T> {
         this.mFilterClickCallback = mFilterClickCallback;
     }
 
+    /**
+     * Get what changed every time selection changed in multi-select mode.
+     */
+    public void setMultiSelectCallback(MultiSelectCallback<T> multiSelectCallback) {
+        this.mMultiSelectCallback = multiSelectCallback;
+    }
+
+    public boolean isMultiSelect() {
+        return mIsMultiSelect;
+    }
+
+    /**
+     * Switch multi-select mode, the current selection is kept, or only the first one of it when switching off.
+     * The filter should be updated after.
+     */
+    void setMultiSelect(boolean multiSelect) {
+        if (mIsMultiSelect == multiSelect) return;
+        mIsMultiSelect = multiSelect;
+        mSelectedPositions.clear();
+        if (multiSelect && mSelectedPosition > 0) {
+            mSelectedPositions.set(mSelectedPosition);
+        }
+        mDecoratedPosition = -1;
+    }
+
     void hideZeroOptions() {
         for (int i = 0; i < mOptions.size(); i++) {
             if (mOptions.get(i).getResultCount() == 0) {
-                mOptions.get(i).getAutofitTextView().setVisibility(GONE);
+                mOptions.get(i).setVisible(false);
             }
         }
     }
@@ -120,18 +239,19 @@ public class FilterHolder<T> {
     void showNonZeroOptions() {
         for (int i = 0; i < mOptions.size(); i++) {
             if (mOptions.get(i).getResultCount() != 0) {
-                mOptions.get(i).getAutofitTextView().setVisibility(VISIBLE);
+                mOptions.get(i).setVisible(true);
             }
         }
     }
 
     void showAllOptions() {
         for (int i = 0; i < mOptions.size(); i++) {
-            mOptions.get(i).getAutofitTextView().setVisibility(VISIBLE);
+            mOptions.get(i).setVisible(true);
         }
     }
 
     void removeFilter() {
+        mHeightMeasurer.cancel(this);
         mContainer.setVisibility(GONE);
         mIsRemoved = true;
     }
@@ -148,35 +268,76 @@ public class FilterHolder<T> {
         return mOptions;
     }
 
+    /**
+     * Only redraw the option losing the selection and the one getting it.
+     */
     void setOptionsDeco() {
-        for (int i = 0; i < mOptions.size(); i++) {
-            if (mOptions.get(i).getFilterId().equals(mCurrentSelected)) {
-                mOptions.get(i).setSelected();
-            } else {
-                mOptions.get(i).setUnSelected();
-            }
+        if (mDecoratedPosition == mSelectedPosition) return;
+        if (mDecoratedPosition != -1) {
+            mOptions.get(mDecoratedPosition).setUnSelected();
+        }
+        if (mSelectedPosition != -1) {
+            mOptions.get(mSelectedPosition).setSelected();
         }
+        mDecoratedPosition = mSelectedPosition;
     }
 
     void addNewFilterButton(final Option<T> option) {
-        mContainer.addView(option.getAutofitTextView());
-        mOptions.add(option);
+        addNewFilterButtons(Collections.singletonList(option));
+    }
+
+    /**
+     * Add many options, the height is only taken once after all of them are added.
+     */
+    void addNewFilterButtons(List<Option<T>> options) {
+        if (options.isEmpty()) return;
+
+        for (int i = 0; i < options.size(); i++) {
+            addOption(options.get(i));
+        }
+        if (mOptionAdapter != null) {
+            mOptionAdapter.refresh();
+        }
 
-        Log.d("Filter Log", "addNewFilterButton " + isContainerVisible());
         if (isContainerVisible()) {
             readyToTakeHeight(false, false);
         } else {
             readyToTakeHeight(true, false);
         }
+    }
+
+    private void addOption(final Option<T> option) {
+        if (!mOptionPositions.containsKey(option.getFilterId())) {
+            mOptionPositions.put(option.getFilterId(), mOptions.size());
+        }
+        mOptions.add(option);
+        if (mSelectedPosition == -1 && mCurrentSelected != null && mCurrentSelected.equals(option.getFilterId())) {
+            mSelectedPosition = mOptions.size() - 1;
+        }
 
-        option.getAutofitTextView().setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View view) {
-                if (mFilterClickCallback != null) {
-                    optionClicked(option.getFilterId());
+        // Recycled options get their views and click listeners from the adapter.
+        if (mOptionAdapter == null) {
+            mContainer.addView(option.getAutofitTextView());
+            option.getAutofitTextView().setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View view) {
+                    onOptionViewClicked(option);
                 }
-            }
-        });
+            });
+        }
+    }
+
+    void onOptionViewClicked(Option<T> option) {
+        if (mFilterClickCallback != null) {
+            optionClicked(option.getFilterId());
+        }
+    }
+
+    /**
+     * Show options with recycled views in the recycler view, must be set before adding any option.
+     */
+    void setOptionAdapter(OptionAdapter<T> optionAdapter) {
+        this.mOptionAdapter = optionAdapter;
     }
 
     void setContainerSize(int width) {
@@ -207,8 +368,9 @@ public class FilterHolder<T> {
         return mFilterNum;
     }
 
-    private boolean shouldSetToGoneWhenDoneLast;
-
+    /**
+     * Show the container so it gets measured, and take its height in the next frame.
+     */
     void readyToTakeHeight(final boolean shouldSetToGoneWhenDone, final boolean force) {
         FlexboxLayout.LayoutParams lp = new FlexboxLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
         lp.width = mContainer.getLayoutParams().width;
@@ -216,51 +378,245 @@ public class FilterHolder<T> {
 
         setContainerVisible(true);
 
+        mHeightMeasurer.request(this, shouldSetToGoneWhenDone, force);
+    }
+
+    /**
+     * Measure the container right now with an exact width and any height, it doesn't need to be shown or laid out.
+     * The height is kept for the width and the options shown, so measuring again is free until they change.
+     *
+     * @param availableWidth Width to measure with when the container doesn't have an exact width.
+     * @return The height, also kept as {@link #getHeight()}.
+     */
+    int measureHeight(int availableWidth, FilterMetrics filterMetrics) {
+        boolean isMetered = filterMetrics != FilterMetrics.NONE;
+        long start = isMetered ? System.nanoTime() : 0;
+        int width = mContainer.getLayoutParams().width;
+        int widthMeasureSpec;
+        if (width >= 0) {
+            widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY);
+        } else if (width == ViewGroup.LayoutParams.WRAP_CONTENT) {
+            widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(availableWidth, View.MeasureSpec.AT_MOST);
+        } else {
+            widthMeasureSpec = View.MeasureSpec.makeMeasureSpec(availableWidth, View.MeasureSpec.EXACTLY);
+        }
+
+        int styleGeneration = mOptionStyleCache.getGeneration();
+        int textGeneration = mOptionStyleCache.getTextGeneration();
+        boolean isTextChanged = consumeTextChanged();
+        if (mHeightCacheStyleGeneration != styleGeneration || mHeightCacheTextGeneration != textGeneration || isTextChanged) {
+            mHeightCache.clear();
+            mHeightCacheStyleGeneration = styleGeneration;
+            mHeightCacheTextGeneration = textGeneration;
+        }
+        BitSet visibleSignature = getVisibleSignature();
+        int height = mHeightCache.get(widthMeasureSpec, visibleSignature);
+        boolean isCacheHit = height != HeightCache.NO_HEIGHT;
+        if (!isCacheHit) {
+            mContainer.measure(widthMeasureSpec, View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+            height = mContainer.getMeasuredHeight();
+            mHeightCache.put(widthMeasureSpec, visibleSignature, height);
+        }
+        mHeight = height;
+        if (isMetered) {
+            filterMetrics.heightMeasured(mFilterNum, System.nanoTime() - start, isCacheHit);
+        }
+        return height;
+    }
+
+    /**
+     * @return true if a text of any option changed since the last measure, heights kept may be wrong then.
+     */
+    private boolean consumeTextChanged() {
+        boolean isTextChanged = false;
+        for (int i = 0; i < mOptions.size(); i++) {
+            // Every option is asked, so none keeps its change for the next measure.
+            isTextChanged |= mOptions.get(i).consumeTextChanged();
+        }
+        return isTextChanged;
+    }
+
+    /**
+     * @return Positions of visible options, and one more bit after them for the empty view.
+     */
+    private BitSet getVisibleSignature() {
+        BitSet visibleSignature = new BitSet(mOptions.size() + 1);
+        for (int i = 0; i < mOptions.size(); i++) {
+            if (mOptions.get(i).isShown()) {
+                visibleSignature.set(i);
+            }
+        }
+        if (mEmptyView.getVisibility() == VISIBLE) {
+            visibleSignature.set(mOptions.size());
+        }
+        return visibleSignature;
+    }
 
-        mContainer.post(new Runnable() {
-            @Override
-            public void run() {
-                final boolean finalShouldSetToGoneWhenDone;
-
-                if (mGetHeightRunnableFuture != null) {
-                    mGetHeightRunnableFuture.cancel(true);
-                    if (!force) {
-                        finalShouldSetToGoneWhenDone = shouldSetToGoneWhenDoneLast;
-                    } else {
-                        finalShouldSetToGoneWhenDone = shouldSetToGoneWhenDone;
-                    }
-                    shouldSetToGoneWhenDoneLast = finalShouldSetToGoneWhenDone;
-
-                    Log.d("Filter Log", "canceled runnable, force = " + force + " shouldSetToGoneWhenDoneLast = " + shouldSetToGoneWhenDoneLast);
-                } else {
-                    shouldSetToGoneWhenDoneLast = shouldSetToGoneWhenDone;
-                    finalShouldSetToGoneWhenDone = shouldSetToGoneWhenDoneLast;
+    /**
+     * Hide the options not on the first screen, they are shown later by {@link #revealNextOption()}.
+     * Rows are counted by widths of options and the height of the first one, so nothing else is measured.
+     *
+     * @param availableWidth Width of the container when it doesn't have an exact width.
+     * @param maxHeight      Height of the first screen.
+     * @return How many options are hidden.
+     */
+    int deferOptionsAfterFirstScreen(int availableWidth, int maxHeight) {
+        int width = mContainer.getLayoutParams().width >= 0 ? mContainer.getLayoutParams().width : availableWidth;
+        int deferredCount = 0;
+        int rowHeight = 0;
+        int rowWidth = 0;
+        int height = 0;
+        for (int i = 0; i < mOptions.size(); i++) {
+            Option<T> option = mOptions.get(i);
+            AutofitTextView view = option.getAutofitTextView();
+            if (!option.isVisible() || view == null) {
+                option.setDeferred(false);
+                continue;
+            }
+            if (height < maxHeight) {
+                if (rowHeight == 0) {
+                    view.measure(View.MeasureSpec.makeMeasureSpec(option.getWidth(), View.MeasureSpec.EXACTLY),
+                            View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+                    rowHeight = view.getMeasuredHeight() + option.getUpDownMargin() * 2;
+                }
+                int optionWidth = option.getWidth() + option.getLeftMargin() + option.getRightMargin();
+                if (rowWidth > 0 && rowWidth + optionWidth > width) {
+                    // Wrapped to a new row.
+                    height += rowHeight;
+                    rowWidth = 0;
                 }
+                rowWidth += optionWidth;
+            }
+            boolean isDeferred = height >= maxHeight;
+            option.setDeferred(isDeferred);
+            if (isDeferred) {
+                deferredCount++;
+            }
+        }
+        mRevealPosition = 0;
+        return deferredCount;
+    }
 
-                mGetHeightRunnableFuture = executorService.submit(new GetHeightRunnable(finalShouldSetToGoneWhenDone));
+    /**
+     * Show the next hidden option.
+     *
+     * @return false if all of them are shown.
+     */
+    boolean revealNextOption() {
+        while (mRevealPosition < mOptions.size()) {
+            Option<T> option = mOptions.get(mRevealPosition++);
+            if (option.isDeferred()) {
+                option.setDeferred(false);
+                return true;
             }
-        });
+        }
+        return false;
+    }
+
+    void revealAllOptions() {
+        while (mRevealPosition < mOptions.size()) {
+            mOptions.get(mRevealPosition++).setDeferred(false);
+        }
     }
 
+    /**
+     * Get called by {@link HeightMeasurer} on the main thread after the container is measured.
+     */
+    void heightTaken(boolean shouldSetToGoneWhenDone) {
+        mHeight = mContainer.getMeasuredHeight();
+        setContainerVisible(!shouldSetToGoneWhenDone);
+    }
+
+    /**
+     * In multi-select mode, the option becomes the only selected one.
+     */
     public void setCurrentSelected(T currentSelected) {
         this.mCurrentSelected = currentSelected;
+        this.mSelectedPosition = currentSelected == null ? -1 : getOptionPosition(currentSelected);
+        if (mIsMultiSelect) {
+            mSelectedPositions.clear();
+            if (mSelectedPosition > 0) {
+                mSelectedPositions.set(mSelectedPosition);
+            }
+        }
+        notifySelectionChanged();
+    }
+
+    private void notifySelectionChanged() {
+        for (int i = 0; i < mSelectionListeners.size(); i++) {
+            mSelectionListeners.get(i).selectionChanged(this);
+        }
     }
 
+    private boolean isPositionSelected(int pos) {
+        return mIsMultiSelect ? mSelectedPositions.get(pos) : pos == mSelectedPosition;
+    }
+
+    /**
+     * @return Positions of the selected options, the default all option isn't included.
+     */
+    BitSet getSelectedPositions() {
+        BitSet selectedPositions = new BitSet();
+        if (mIsMultiSelect) {
+            selectedPositions.or(mSelectedPositions);
+        } else if (mSelectedPosition > 0) {
+            selectedPositions.set(mSelectedPosition);
+        }
+        return selectedPositions;
+    }
+
+    /**
+     * @return filterIds of all the selected options, in the order of options.
+     */
+    public List<T> getSelectedFilterIds() {
+        List<T> selectedFilterIds = new ArrayList<>();
+        BitSet selectedPositions = getSelectedPositions();
+        for (int i = selectedPositions.nextSetBit(0); i >= 0; i = selectedPositions.nextSetBit(i + 1)) {
+            selectedFilterIds.add(mOptions.get(i).getFilterId());
+        }
+        return selectedFilterIds;
+    }
+
+    void addSelectionListener(SelectionListener selectionListener) {
+        mSelectionListeners.add(selectionListener);
+    }
+
+    public T getCurrentSelected() {
+        return mCurrentSelected;
+    }
+
+    /**
+     * @return The selected option, null if nothing selected.
+     */
+    Option<T> getSelectedOption() {
+        if (mSelectedPosition == -1) {
+            return null;
+        }
+        return mOptions.get(mSelectedPosition);
+    }
+
+    /**
+     * The selection is cleared before the callback, so it sees the new selection, same as {@link #toggleOption(Object)}.
+     */
     public void unSelectedAll() {
+        setCurrentSelected(null);
         if (mFilterClickCallback != null) {
             mFilterClickCallback.filterUnSelectedAll(mFilterNum);
         }
-        setCurrentSelected(null);
     }
 
     public void optionClicked(T filterId) {
+        if (mIsMultiSelect) {
+            toggleOption(filterId);
+            return;
+        }
         if (filterId == null) {
             unSelectedAll();
             setOptionsDeco();
         } else {
             setCurrentSelected(filterId);
 
-            if (mChangeColorWhenSelect) {
+            if (isChangeColorWhenSelect()) {
                 setOptionsDeco();
             }
 
@@ -272,28 +628,60 @@ public class FilterHolder<T> {
     }
 
 
-    private class GetHeightRunnable implements Runnable {
-        boolean shouldSetToGoneWhenDone;
-        String from;
-
-        public GetHeightRunnable(boolean shouldSetToGoneWhenDone) {
-            this.shouldSetToGoneWhenDone = shouldSetToGoneWhenDone;
-            this.from = from;
+    /**
+     * Toggle an option in multi-select mode, the default all option or null clears the selection.
+     * Only the toggled options are redrawn.
+     */
+    private void toggleOption(@Nullable T filterId) {
+        int pos = filterId == null ? 0 : getOptionPosition(filterId);
+        if (pos == -1) return;
+
+        List<T> selected = new ArrayList<>(1);
+        List<T> unselected = new ArrayList<>();
+        if (pos == 0) {
+            for (int i = mSelectedPositions.nextSetBit(0); i >= 0; i = mSelectedPositions.nextSetBit(i + 1)) {
+                unselected.add(mOptions.get(i).getFilterId());
+                decorate(i, false);
+            }
+            mSelectedPositions.clear();
+        } else if (mSelectedPositions.get(pos)) {
+            mSelectedPositions.clear(pos);
+            unselected.add(filterId);
+            decorate(pos, false);
+        } else {
+            mSelectedPositions.set(pos);
+            selected.add(filterId);
+            decorate(pos, true);
         }
 
-        @Override
-        public void run() {
-            mHeight = mContainer.getMeasuredHeight();
-            Log.d("Filter Log", "GetHeightRunnable: " + shouldSetToGoneWhenDone + ", h = " + mHeight);
-            if (shouldSetToGoneWhenDone) {
-                setContainerVisible(false);
+        mSelectedPosition = mSelectedPositions.nextSetBit(0);
+        mCurrentSelected = mSelectedPosition == -1 ? null : mOptions.get(mSelectedPosition).getFilterId();
+        notifySelectionChanged();
+
+        if (mFilterClickCallback != null) {
+            if (filterId == null) {
+                mFilterClickCallback.filterUnSelectedAll(mFilterNum);
             } else {
-                setContainerVisible(true);
+                mFilterClickCallback.filterOptionClicked(mFilterNum, filterId);
             }
-            mGetHeightRunnableFuture = null;
         }
+        if (mMultiSelectCallback != null && (!selected.isEmpty() || !unselected.isEmpty())) {
+            mMultiSelectCallback.filterSelectionChanged(mFilterNum, selected, unselected);
+        }
+    }
+
+    private boolean isChangeColorWhenSelect() {
+        return mOptionStyleCache.getConfig().isChangeColorWhenSelect();
     }
 
+    private void decorate(int pos, boolean isSelected) {
+        if (!isChangeColorWhenSelect()) return;
+        if (isSelected) {
+            mOptions.get(pos).setSelected();
+        } else {
+            mOptions.get(pos).setUnSelected();
+        }
+    }
 
     public FlexboxLayout getContainer() {
         return mContainer;
@@ -0,0 +1,82 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * A small open-addressing map from filterNum to {@link FilterHolder}, so finding a filter doesn't
+ * need to walk through every filter we have.
+ */
+class FilterIndex {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] mKeys;
+    private FilterHolder[] mValues;
+    private int mSize;
+
+    FilterIndex() {
+        mKeys = new int[DEFAULT_CAPACITY];
+        mValues = new FilterHolder[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Put a filter in, if there already is a filter with the same filterNum, the old one wins,
+     * same as the first match of a linear scan.
+     *
+     * @return true if the filter is added.
+     */
+    boolean put(int filterNum, FilterHolder filterHolder) {
+        if ((mSize + 1) * 4 > mKeys.length * 3) {
+            resize(mKeys.length * 2);
+        }
+        int slot = findSlot(mKeys, mValues, filterNum);
+        if (mValues[slot] != null) {
+            return false;
+        }
+        mKeys[slot] = filterNum;
+        mValues[slot] = filterHolder;
+        mSize++;
+        return true;
+    }
+
+    /**
+     * @return The filter with the filterNum, null if there is none.
+     */
+    FilterHolder get(int filterNum) {
+        return mValues[findSlot(mKeys, mValues, filterNum)];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = mKeys;
+        FilterHolder[] oldValues = mValues;
+
+        mKeys = new int[capacity];
+        mValues = new FilterHolder[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = findSlot(mKeys, mValues, oldKeys[i]);
+                mKeys[slot] = oldKeys[i];
+                mValues[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Linear probing, returns the slot holding the key or the first free slot after it.
+     */
+    private static int findSlot(int[] keys, FilterHolder[] values, int filterNum) {
+        int mask = keys.length - 1;
+        int slot = mix(filterNum) & mask;
+        while (values[slot] != null && keys[slot] != filterNum) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,81 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * Timings and counters of the hot paths of a {@link FlexibleFilter}, set it by
+ * {@link FlexibleFilter#setFilterMetrics(FilterMetrics)} to send them to your telemetry.
+ * All of them are called on the main thread. Nothing is timed with {@link #NONE}, which is the default.
+ * {@link HistogramFilterMetrics} keeps them in histograms if you don't want to handle every event.
+ */
+public interface FilterMetrics {
+    /**
+     * Does nothing, filters don't even read the clock with it.
+     */
+    FilterMetrics NONE = new FilterMetrics() {
+        @Override
+        public void filterUpdated(int filterNum, long durationNanos, int optionCount, int touchedOptionCount) {
+
+        }
+
+        @Override
+        public void allFiltersUpdated(long durationNanos, int filterCount) {
+
+        }
+
+        @Override
+        public void heightsTaken(long durationNanos, int filterCount) {
+
+        }
+
+        @Override
+        public void heightMeasured(int filterNum, long durationNanos, boolean isCacheHit) {
+
+        }
+
+        @Override
+        public void autofitSolved(long durationNanos, boolean isCacheHit) {
+
+        }
+
+        @Override
+        public void animationFrame(boolean isOpening, long frameNanos) {
+
+        }
+    };
+
+    /**
+     * A filter got its options updated.
+     *
+     * @param optionCount        Options in the filter.
+     * @param touchedOptionCount Options whose view really changed.
+     */
+    void filterUpdated(int filterNum, long durationNanos, int optionCount, int touchedOptionCount);
+
+    /**
+     * {@link FlexibleFilter#updateAllFilters()} is done, every filter in it is also sent to {@link #filterUpdated}.
+     */
+    void allFiltersUpdated(long durationNanos, int filterCount);
+
+    /**
+     * Heights of the filters waiting for them are taken in a pre-draw.
+     */
+    void heightsTaken(long durationNanos, int filterCount);
+
+    /**
+     * A filter is measured off-screen to be opened.
+     *
+     * @param isCacheHit The height kept from an open before is used.
+     */
+    void heightMeasured(int filterNum, long durationNanos, boolean isCacheHit);
+
+    /**
+     * A text size of an option is found.
+     *
+     * @param isCacheHit It's found in the shared cache without solving.
+     */
+    void autofitSolved(long durationNanos, boolean isCacheHit);
+
+    /**
+     * A frame of an open or close animation, frameNanos is the time since the frame before.
+     */
+    void animationFrame(boolean isOpening, long frameNanos);
+}
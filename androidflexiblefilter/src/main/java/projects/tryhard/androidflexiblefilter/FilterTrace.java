@@ -0,0 +1,76 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.Nullable;
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Named trace sections around the expensive calls of {@link FlexibleFilter}, so they show up by name in systrace
+ * or Perfetto instead of as anonymous measure and layout time. Off by default, turn it on by {@link #setEnabled(boolean)}
+ * while profiling. Sections are only traced on the main thread, where all of these calls happen.
+ */
+public final class FilterTrace {
+    /**
+     * Where sections go, e.g. to your own tracing library.
+     */
+    public interface Tracer {
+        void beginSection(String sectionName);
+
+        void endSection();
+    }
+
+    /**
+     * The default, sections go to {@link android.os.Trace} on API 18 and above.
+     */
+    public static final Tracer TRACE_COMPAT = new Tracer() {
+        @Override
+        public void beginSection(String sectionName) {
+            TraceCompat.beginSection(sectionName);
+        }
+
+        @Override
+        public void endSection() {
+            TraceCompat.endSection();
+        }
+    };
+
+    private static volatile boolean sEnabled = false;
+    private static volatile Tracer sTracer = TRACE_COMPAT;
+
+    private FilterTrace() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @param tracer null to go back to {@link #TRACE_COMPAT}.
+     */
+    public static void setTracer(@Nullable Tracer tracer) {
+        sTracer = tracer == null ? TRACE_COMPAT : tracer;
+    }
+
+    /**
+     * Begin a section if tracing is on, always pair it with {@link #end(Tracer)} in a finally block.
+     *
+     * @return The tracer to end the section with, null if nothing was begun. So a section begun is ended by the same
+     * tracer, even if tracing is turned off or the tracer is changed in between.
+     */
+    @Nullable
+    static Tracer begin(String sectionName) {
+        if (!sEnabled) return null;
+        Tracer tracer = sTracer;
+        tracer.beginSection(sectionName);
+        return tracer;
+    }
+
+    static void end(@Nullable Tracer tracer) {
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+}
@@ -5,15 +5,18 @@ import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Rect;
 import android.os.Build;
 import android.support.annotation.ColorRes;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
-import android.support.v4.content.ContextCompat;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.widget.TextViewCompat;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -30,17 +33,28 @@ import com.google.android.flexbox.FlexboxLayout;
 import com.google.android.flexbox.JustifyContent;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * A class for filter, set up like this. For more detail and samples, go to {@see <a hreh="https://github.com/you55645/Android-Flex-Filter" >FlexibleFilter</a>}.
  * 1. If you use xml to set attributes or you want to use default values, you can use the {@link #init(Context, int, int, Object, FilterErrorCallback)}. If you want to do the init settings through code, use {@link #init(Context, int, int, Object, int, boolean, boolean, Orientation, int, boolean, boolean, FilterErrorCallback)}.
+ * Colors, backgrounds and what options to hide are kept in a {@link FilterConfig} of every filter, change them by {@link #setConfig(FilterConfig)}.
  * --- Basic set up done, you can open up to see how it looks like.
  * 2. After init, you will have at least one filter, you can add filter later also, but if you only planning on using one. You can start to add options. (step 4).
  * 3. If you want to add more filters, use {@link #addFilter(int, Object, int)}.
  * 4. Adding options to filter you want to add by {@link #addFilterOption(int, Object, int, int, OptionGetStringCallback)} or {@link #addFilterOption(int, Object, int, int, int, int, int, OptionGetStringCallback)}.
- * 5. If you want to update certain option from certain filter, use {@link #updateCertainOption(FilterHolder, Object, int)}. If you want to update all, use {@link #updateAllFilters()}.
+ * For many options, use {@link #addFilterOptions(int, List)}, or {@link #addFilterOptionsAsync(int, List, OptionsPreparedCallback)} to not block the main thread.
+ * For thousands of options, init with {@link ContainerMode#RECYCLED} so only options on screen get a view,
+ * and open with {@link AnimationMode#CLIP} so filters aren't laid out on every frame of the animation.
+ * 5. If you want to update certain option from certain filter, use {@link #updateCertainOption(FilterHolder, Object, int)}, or {@link #updateCounts(FilterHolder, Map)} for many options at once. If you want to update all, use {@link #updateAllFilters()}.
+ * If you are going to make lots of updates at once, wrap them with {@link #beginUpdate()} and {@link #commitUpdate()}, or use {@link #batch(Runnable)}.
+ * If counts come from a list of items, let a {@link FacetEngine} count them for you.
+ * If filtering your items takes long, use {@link #setAsyncQuery(QueryEvaluator, QueryResultCallback)} to do it off the main thread.
  * --- Set up done.
  *
  * @param <T> A class for you to decide the unique ID of every option, which will be passed when user clicked an option or call {@link #optionSelect(FilterHolder, Object)} through code.
@@ -55,24 +69,75 @@ public class FlexibleFilter<T> extends LinearLayout {
     }
 
     /**
-     * Default color of the text color, can be changed.
+     * A Enum used to decide how options are shown.
      */
-    public static @ColorRes
-    int mUnSelectedTextColor = R.color.black;
-    public static @ColorRes
-    int mSelectedTextColor = R.color.white;
+    public enum ContainerMode {
+        /**
+         * Every option is a view in the filter, good for filters with not too many options.
+         */
+        FLEXBOX,
+        /**
+         * Options are shown in a recycler view with a limited height, only options on screen have a view.
+         * Use it for filters with thousands of options.
+         */
+        RECYCLED
+    }
 
     /**
-     * Default background of the filter option background, can be changed.
+     * A Enum used to decide how filters are opened and closed.
      */
-    public static @DrawableRes
-    int mSelectedBackground = R.drawable.filter_selector_default_selected;
-    public static @DrawableRes
-    int mUnSelectedBackground = R.drawable.filter_selector_default_not_selected;
+    public enum AnimationMode {
+        /**
+         * The height of the filter is changed on every frame, it's measured and laid out again every frame.
+         */
+        LAYOUT,
+        /**
+         * The filter is laid out once with its full height on a hardware layer, only its clip changes on every frame.
+         * Use it for filters with lots of options.
+         */
+        CLIP
+    }
+
+    /**
+     * Colors, backgrounds and what options to hide, only for this filter.
+     */
+    private FilterConfig mConfig = FilterConfig.DEFAULT;
 
     private Context mContext;
 
     private List<FilterHolder> mFilters;
+    /**
+     * Index of {@link #mFilters} by filterNum, so we don't need to scan the list to find a filter.
+     */
+    private FilterIndex mFilterIndex;
+    /**
+     * How many {@link #beginUpdate()} haven't been committed yet, filters only get updated when it's 0.
+     */
+    private int mUpdateDepth = 0;
+    /**
+     * Filters that need to be updated when the update is committed.
+     */
+    private LinkedHashSet<FilterHolder> mPendingUpdateFilters = new LinkedHashSet<>();
+    /**
+     * Evaluate queries off the main thread when selection changed, null if async query is off.
+     */
+    private AsyncQueryRunner<?> mAsyncQueryRunner;
+    private FilterHolder.SelectionListener mQuerySelectionListener = new FilterHolder.SelectionListener() {
+        @Override
+        public void selectionChanged(FilterHolder<?> filterHolder) {
+            if (mAsyncQueryRunner != null) {
+                mAsyncQueryRunner.run(getSelectionSnapshot());
+            }
+        }
+    };
+    /**
+     * Takes heights of all the filters on the main thread, one pre-draw for all the requests of a frame.
+     */
+    private HeightMeasurer mHeightMeasurer = new HeightMeasurer(this);
+    /**
+     * Backgrounds and text colors of options, resolved once for all options of this filter.
+     */
+    private OptionStyleCache mOptionStyleCache;
     private FilterErrorCallback mFilterErrorCallback;
     private List<Integer> mCurrentOpeningFilters;
 
@@ -90,14 +155,6 @@ public class FlexibleFilter<T> extends LinearLayout {
 
 
     private int mDefaultEmptyViewLayout;
-    /**
-     * If this flag set to true, will hide all the options that is 0.
-     */
-    public static boolean mShouldHideZeroFilters = false;
-    /**
-     * If this flag set to true, will hide the default added all option.
-     */
-    public static boolean mShouldHideAll = false;
     /**
      * A variable decide how many filters we show at one row. Default is one.  -2 means wrap_content. -1 means match_parent, but it's seems only works on vertical orientation.
      */
@@ -107,14 +164,26 @@ public class FlexibleFilter<T> extends LinearLayout {
      */
     private Orientation mOrientation = Orientation.VERTICAL;
     /**
-     * A variable to decide whether to close the dropdown or not after click on an option.
+     * How options of every filter are shown, must be decided before filters are added.
      */
-    private boolean mShouldCloseAfterClick = true;
-
+    private ContainerMode mContainerMode = ContainerMode.FLEXBOX;
     /**
-     * A variable to decide when option select, change its' color or not.
+     * How filters are opened and closed.
      */
-    public static boolean mChangeColorWhenSelect = true;
+    private AnimationMode mAnimationMode = AnimationMode.LAYOUT;
+    @Nullable
+    private AnimationStatsCallback mAnimationStatsCallback;
+    private FilterMetrics mFilterMetrics = FilterMetrics.NONE;
+    /**
+     * Only options on the first screen are shown when a filter opens, the rest are shown frame by frame after it.
+     */
+    private boolean mIsProgressiveOpen = false;
+    private OptionRevealer mOptionRevealer = new OptionRevealer();
+    private long mPreparedOptionsFrameBudgetNanos = PREPARED_OPTIONS_FRAME_BUDGET_NANOS;
+    /**
+     * A variable to decide whether to close the dropdown or not after click on an option.
+     */
+    private boolean mShouldCloseAfterClick = true;
 
     /**
      * Callback when  something goes wrong.
@@ -157,6 +226,20 @@ public class FlexibleFilter<T> extends LinearLayout {
 
     }
 
+    /**
+     * Callback when selection of a filter in multi-select mode changed, see {@link #setMultiSelect(int, boolean)}.
+     *
+     * @param <T> Class of the option's unique ID.
+     */
+    public interface MultiSelectCallback<T> {
+        /**
+         * @param filterNum  The filterNum of the filter.
+         * @param selected   Options just selected.
+         * @param unselected Options just unselected.
+         */
+        void filterSelectionChanged(int filterNum, List<T> selected, List<T> unselected);
+    }
+
     /**
      * A callback for you to decide the text on option.
      */
@@ -164,6 +247,63 @@ public class FlexibleFilter<T> extends LinearLayout {
         String getString(S filterId, int count);
     }
 
+    /**
+     * Callback when options added by {@link #addFilterOptionsAsync(int, List, OptionsPreparedCallback)} are all shown.
+     */
+    public interface OptionsPreparedCallback {
+        /**
+         * @param filterNum   The filter number the options are added to.
+         * @param optionCount How many options are added.
+         */
+        void optionsPrepared(int filterNum, int optionCount);
+    }
+
+    /**
+     * Evaluate what the user selected, get called on a worker thread.
+     *
+     * @param <R> Class of your result.
+     */
+    public interface QueryEvaluator<R> {
+        /**
+         * Find your result for the selections, and set new counts of options you want to change.
+         * Check {@link QueryResult#isCancelled()} from time to time, stop if it's true since nobody wants it.
+         *
+         * @param selections The selections when the query started.
+         * @param result     Put your result and counts here.
+         */
+        void evaluate(SelectionSnapshot selections, QueryResult<R> result);
+    }
+
+    /**
+     * Get the result of the latest selections on the main thread, counts are already shown.
+     */
+    public interface QueryResultCallback<R> {
+        void queryEvaluated(QueryResult<R> result);
+    }
+
+    /**
+     * Get frame times of every open and close animation, see {@link #setAnimationStatsCallback(AnimationStatsCallback)}.
+     */
+    public interface AnimationStatsCallback {
+        void animationEnded(FrameStats frameStats);
+    }
+
+    /**
+     * Get the progress of showing options of a filter opened progressively, see {@link #setProgressiveOpen(boolean)}.
+     */
+    public interface ProgressiveOpenListener {
+        /**
+         * @param revealedCount How many hidden options are shown, it's totalCount when all of them are shown.
+         * @param totalCount    How many options were hidden when the filter opened.
+         */
+        void optionsRevealed(int filterNum, int revealedCount, int totalCount);
+    }
+
+    /**
+     * How long we add prepared options in one frame, leave the rest of the frame for drawing.
+     */
+    private static final long PREPARED_OPTIONS_FRAME_BUDGET_NANOS = 8000000L;
+
     //region View constructors.
     public FlexibleFilter(Context context) {
         super(context);
@@ -175,10 +315,8 @@ public class FlexibleFilter<T> extends LinearLayout {
         TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.FlexibleFilter);
 
         mFilterColCount = attributes.getInteger(R.styleable.FlexibleFilter_colCount, 1);
-        mShouldHideAll = attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideAll, false);
-        mShouldHideZeroFilters = attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideZeroFilters, false);
+        mConfig = readConfig(attributes);
         mShouldCloseAfterClick = attributes.getBoolean(R.styleable.FlexibleFilter_shouldCloseAfterClick, true);
-        mChangeColorWhenSelect = attributes.getBoolean(R.styleable.FlexibleFilter_changeColorWhenSelect, true);
 
         if (attributes.getInt(R.styleable.FlexibleFilter_orientation, 0) == 0) {
             mOrientation = Orientation.VERTICAL;
@@ -186,6 +324,18 @@ public class FlexibleFilter<T> extends LinearLayout {
             mOrientation = Orientation.HORIZONTAL;
         }
 
+        if (attributes.getInt(R.styleable.FlexibleFilter_containerMode, 0) == 0) {
+            mContainerMode = ContainerMode.FLEXBOX;
+        } else {
+            mContainerMode = ContainerMode.RECYCLED;
+        }
+
+        if (attributes.getInt(R.styleable.FlexibleFilter_animationMode, 0) == 0) {
+            mAnimationMode = AnimationMode.LAYOUT;
+        } else {
+            mAnimationMode = AnimationMode.CLIP;
+        }
+
         attributes.recycle();
     }
 
@@ -195,10 +345,8 @@ public class FlexibleFilter<T> extends LinearLayout {
         TypedArray attributes = context.obtainStyledAttributes(attrs, R.styleable.FlexibleFilter, defStyleAttr, 0);
 
         mFilterColCount = attributes.getInteger(R.styleable.FlexibleFilter_colCount, 1);
-        mShouldHideAll = attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideAll, false);
-        mShouldHideZeroFilters = attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideZeroFilters, false);
+        mConfig = readConfig(attributes);
         mShouldCloseAfterClick = attributes.getBoolean(R.styleable.FlexibleFilter_shouldCloseAfterClick, true);
-        mChangeColorWhenSelect = attributes.getBoolean(R.styleable.FlexibleFilter_changeColorWhenSelect, true);
 
         if (attributes.getInt(R.styleable.FlexibleFilter_orientation, 0) == 0) {
             mOrientation = Orientation.VERTICAL;
@@ -206,6 +354,18 @@ public class FlexibleFilter<T> extends LinearLayout {
             mOrientation = Orientation.HORIZONTAL;
         }
 
+        if (attributes.getInt(R.styleable.FlexibleFilter_containerMode, 0) == 0) {
+            mContainerMode = ContainerMode.FLEXBOX;
+        } else {
+            mContainerMode = ContainerMode.RECYCLED;
+        }
+
+        if (attributes.getInt(R.styleable.FlexibleFilter_animationMode, 0) == 0) {
+            mAnimationMode = AnimationMode.LAYOUT;
+        } else {
+            mAnimationMode = AnimationMode.CLIP;
+        }
+
         attributes.recycle();
     }
 
@@ -213,6 +373,14 @@ public class FlexibleFilter<T> extends LinearLayout {
     public FlexibleFilter(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr, defStyleRes);
     }
+
+    private static FilterConfig readConfig(TypedArray attributes) {
+        return new FilterConfig.Builder()
+                .setShouldHideAll(attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideAll, false))
+                .setShouldHideZeroFilters(attributes.getBoolean(R.styleable.FlexibleFilter_shouldHideZeroFilters, false))
+                .setChangeColorWhenSelect(attributes.getBoolean(R.styleable.FlexibleFilter_changeColorWhenSelect, true))
+                .build();
+    }
     //endregion
 
     //region Init.
@@ -251,6 +419,22 @@ public class FlexibleFilter<T> extends LinearLayout {
 
     }
 
+    /**
+     * Use to init the whole filter with default, but decide how options are shown.
+     *
+     * @param context             We use to inflate layouts.
+     * @param filterNum           A number for default filter, use it when you want to update, show or hide certain filter.
+     * @param titleLayout         The title you want for the filter, -1 means no title, 0 means default title.
+     * @param allT                A unique ID for the default all option.
+     * @param containerMode       How options are shown, use {@link ContainerMode#RECYCLED} for filters with lots of options.
+     * @param filterErrorCallback Callbacks when error occurs.
+     */
+    public void init(Context context, int filterNum, @LayoutRes int titleLayout, final T allT, ContainerMode containerMode,
+                     FilterErrorCallback filterErrorCallback) {
+        mContainerMode = containerMode;
+        init(context, filterNum, titleLayout, allT, filterErrorCallback);
+    }
+
     /**
      * Use to init the whole filter with default.
      *
@@ -261,44 +445,51 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param filterErrorCallback Callbacks when error occurs.
      */
     public void init(Context context, int filterNum, @LayoutRes int titleLayout, final T allT, FilterErrorCallback filterErrorCallback) {
-        inflate(getContext(), R.layout.filter_layout, this);
-        mFilterErrorCallback = filterErrorCallback;
-        mContext = context;
-        mTitleContainer = findViewById(R.id.filter_title_container);
-        mFilterContainer = findViewById(R.id.filter_filter_container);
-        mHorizontalScrollView = findViewById(R.id.filter_horizontalScrollView);
-        mVerticalScrollView = findViewById(R.id.filter_verticalScrollView);
-
-        mDefaultEmptyViewLayout = R.layout.filter_default_empty_view;
-
-        mCurrentOpeningFilters = new ArrayList<>();
-
-        if (titleLayout != -1) {
-            if (titleLayout == 0) {
-                mTitleView = LayoutInflater.from(context).inflate(R.layout.filter_default_title, null);
-                mTitleView.setOnClickListener(new OnClickListener() {
-                    @Override
-                    public void onClick(View view) {
-                        if (!isCurrentOpen()) {
-                            open();
-                        } else {
-                            close();
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.init");
+        try {
+            inflate(getContext(), R.layout.filter_layout, this);
+            mFilterErrorCallback = filterErrorCallback;
+            mContext = context;
+            mOptionStyleCache = new OptionStyleCache(context, mConfig);
+            mTitleContainer = findViewById(R.id.filter_title_container);
+            mFilterContainer = findViewById(R.id.filter_filter_container);
+            mHorizontalScrollView = findViewById(R.id.filter_horizontalScrollView);
+            mVerticalScrollView = findViewById(R.id.filter_verticalScrollView);
+
+            mDefaultEmptyViewLayout = R.layout.filter_default_empty_view;
+
+            mCurrentOpeningFilters = new ArrayList<>();
+
+            if (titleLayout != -1) {
+                if (titleLayout == 0) {
+                    mTitleView = LayoutInflater.from(context).inflate(R.layout.filter_default_title, null);
+                    mTitleView.setOnClickListener(new OnClickListener() {
+                        @Override
+                        public void onClick(View view) {
+                            if (!isCurrentOpen()) {
+                                open();
+                            } else {
+                                close();
+                            }
                         }
-                    }
-                });
-            } else {
-                mTitleView = LayoutInflater.from(context).inflate(titleLayout, null);
+                    });
+                } else {
+                    mTitleView = LayoutInflater.from(context).inflate(titleLayout, null);
+                }
+                mTitleContainer.addView(mTitleView);
             }
-            mTitleContainer.addView(mTitleView);
-        }
 
-        mFilters = new ArrayList<>();
+            mFilters = new ArrayList<>();
+            mFilterIndex = newFilterIndex();
 
-        addFilter(filterNum, allT, -1);
+            addFilter(filterNum, allT, -1);
 
-        mCurrentOpeningFilters.add(0);
+            mCurrentOpeningFilters.add(0);
 
-        setFilterOrientation(mOrientation);
+            setFilterOrientation(mOrientation);
+        } finally {
+            FilterTrace.end(tracer);
+        }
     }
     //endregion
 
@@ -308,39 +499,116 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param emptyViewLayout A view to display when no option are shown. -1 means default emptyView.
      */
     public <S> void addFilter(int filterNum, final S defaultT, @LayoutRes int emptyViewLayout) {
-        FlexboxLayout flexboxLayout = new FlexboxLayout(mContext);
-        FlexboxLayout.LayoutParams lp = new FlexboxLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
-        flexboxLayout.setLayoutParams(lp);
-        flexboxLayout.setFlexDirection(FlexDirection.ROW);
-        flexboxLayout.setFlexWrap(FlexWrap.WRAP);
-        flexboxLayout.setJustifyContent(JustifyContent.FLEX_START);
-        flexboxLayout.setAlignItems(AlignItems.FLEX_START);
-        flexboxLayout.setAlignContent(AlignContent.FLEX_START);
-
-        mFilterContainer.addView(flexboxLayout);
-
-        if (emptyViewLayout != -1) {
-            View emptyView = LayoutInflater.from(mContext).inflate(emptyViewLayout, null);
-            mFilters.add(new FilterHolder<S>(filterNum, new ArrayList<Option<S>>(), flexboxLayout, emptyView));
-        } else {
-            View emptyView = LayoutInflater.from(mContext).inflate(mDefaultEmptyViewLayout, null);
-            mFilters.add(new FilterHolder<S>(filterNum, new ArrayList<Option<S>>(), flexboxLayout, emptyView));
-        }
-
-        addFilterOption(filterNum, defaultT, 0, getScreenWidthPixel(mContext), new OptionGetStringCallback<S>() {
-            @Override
-            public String getString(S filterId, int count) {
-                return String.format(Locale.CHINESE, "All(%d)", count);
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.addFilter");
+        try {
+            FlexboxLayout flexboxLayout = new FlexboxLayout(mContext);
+            FlexboxLayout.LayoutParams lp = new FlexboxLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+            flexboxLayout.setLayoutParams(lp);
+            flexboxLayout.setFlexDirection(FlexDirection.ROW);
+            flexboxLayout.setFlexWrap(FlexWrap.WRAP);
+            flexboxLayout.setJustifyContent(JustifyContent.FLEX_START);
+            flexboxLayout.setAlignItems(AlignItems.FLEX_START);
+            flexboxLayout.setAlignContent(AlignContent.FLEX_START);
+
+            mFilterContainer.addView(flexboxLayout);
+
+            View emptyView;
+            if (emptyViewLayout != -1) {
+                emptyView = LayoutInflater.from(mContext).inflate(emptyViewLayout, null);
+            } else {
+                emptyView = LayoutInflater.from(mContext).inflate(mDefaultEmptyViewLayout, null);
             }
-        });
+            FilterHolder<S> filterHolder = new FilterHolder<>(filterNum, new ArrayList<Option<S>>(), flexboxLayout, emptyView, mHeightMeasurer,
+                    mOptionStyleCache);
+            if (mContainerMode == ContainerMode.RECYCLED) {
+                OptionRecyclerView recyclerView = new OptionRecyclerView(mContext, getScreenHeightPixel(mContext) / 2);
+                recyclerView.setLayoutParams(new FlexboxLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+                OptionAdapter<S> optionAdapter = new OptionAdapter<>(filterHolder, new OptionAdapter.OptionViewFactory() {
+                    @Override
+                    public AutofitTextView newOptionView() {
+                        return newOptionTextView();
+                    }
+                });
+                recyclerView.setAdapter(optionAdapter);
+                flexboxLayout.addView(recyclerView);
+                filterHolder.setOptionAdapter(optionAdapter);
+            }
+            filterHolder.addSelectionListener(mQuerySelectionListener);
+            mFilters.add(filterHolder);
+            mFilterIndex.put(filterNum, filterHolder);
+
+            addFilterOption(filterNum, defaultT, 0, getScreenWidthPixel(mContext), new OptionGetStringCallback<S>() {
+                @Override
+                public String getString(S filterId, int count) {
+                    return String.format(Locale.CHINESE, "All(%d)", count);
+                }
+            });
+        } finally {
+            FilterTrace.end(tracer);
+        }
     }
 
     /**
      * Update all exist filters, including those are hiding.
      */
     public void updateAllFilters() {
+        boolean isMetered = mFilterMetrics != FilterMetrics.NONE;
+        long start = isMetered ? System.nanoTime() : 0;
         for (int i = 0; i < mFilters.size(); i++) {
-            updateFilter(mFilters.get(i).getFilterNum());
+            updateFilter(mFilters.get(i));
+        }
+        if (isMetered) {
+            mFilterMetrics.allFiltersUpdated(System.nanoTime() - start, mFilters.size());
+        }
+    }
+
+    /**
+     * Options only ask {@link OptionGetStringCallback} for a new text when their count changed.
+     * If your callback's result depends on something else, call this after it changed to get all the texts again.
+     */
+    public void refreshOptionTexts() {
+        mOptionStyleCache.refreshTexts();
+        updateAllFilters();
+    }
+
+    /**
+     * Start a batch of updates, counts and visibility changes of filters will wait until {@link #commitUpdate()}
+     * and every changed filter will only be updated once. Can be nested.
+     */
+    public void beginUpdate() {
+        mUpdateDepth++;
+    }
+
+    /**
+     * Finish a batch of updates started by {@link #beginUpdate()}. When the outermost batch is committed,
+     * every changed filter get updated once and layout is requested once.
+     */
+    public void commitUpdate() {
+        if (mUpdateDepth == 0) {
+            throw new IllegalStateException("commitUpdate() called without beginUpdate()");
+        }
+        mUpdateDepth--;
+        if (mUpdateDepth > 0 || mPendingUpdateFilters.isEmpty()) return;
+
+        List<FilterHolder> pendingUpdateFilters = new ArrayList<>(mPendingUpdateFilters);
+        mPendingUpdateFilters.clear();
+        for (int i = 0; i < pendingUpdateFilters.size(); i++) {
+            applyFilterUpdate(pendingUpdateFilters.get(i));
+        }
+        requestLayout();
+    }
+
+    /**
+     * Run the updates in a batch, same as calling {@link #beginUpdate()} before and {@link #commitUpdate()} after.
+     *
+     * @param updates The updates to run.
+     */
+    public void batch(Runnable updates) {
+        beginUpdate();
+        try {
+            updates.run();
+        } finally {
+            commitUpdate();
         }
     }
 
@@ -350,11 +618,11 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @return true if opened.
      */
     public boolean isCurrentOpen() {
-        if (getFilter(mCurrentOpeningFilters.get(0)) == null) {
-            mFilterErrorCallback.noSuchFilterError(0);
+        FilterHolder filterHolder = getFilter(mCurrentOpeningFilters.get(0));
+        if (filterHolder == null) {
             return false;
         }
-        return getFilter(mCurrentOpeningFilters.get(0)).isContainerVisible();
+        return filterHolder.isContainerVisible();
     }
 
     /**
@@ -374,13 +642,17 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param openFilters The filter numbers tou want to open.
      */
     public void setOpeningFilters(List<Integer> openFilters) {
-        if (!isFiltersValid(openFilters)) return;
+        List<FilterHolder> openFilterHolders = getFilters(openFilters);
+        if (openFilterHolders == null) return;
         if (isCurrentOpen()) {
             hideAllOpeningContainer();
         }
 
-        for (int i = 0; i < openFilters.size(); i++) {
-            FilterHolder filterHolder = getFilter(openFilters.get(i));
+        for (int i = 0; i < openFilterHolders.size(); i++) {
+            FilterHolder filterHolder = openFilterHolders.get(i);
+            // Not opened by open(), nothing is left hidden.
+            mOptionRevealer.cancel(filterHolder);
+            filterHolder.revealAllOptions();
             filterHolder.setContainerVisible(isCurrentOpen());
             if (mFilterColCount > 0) {
                 filterHolder.setContainerSize(getScreenWidthPixel(mContext) / mFilterColCount);
@@ -403,21 +675,40 @@ public class FlexibleFilter<T> extends LinearLayout {
         return mCurrentOpeningFilters;
     }
 
+    /**
+     * In multi-select mode, clicking an option toggles it so users can pick many options of a filter,
+     * clicking the default all option clears them. Get the changes by {@link FilterHolder#setMultiSelectCallback(MultiSelectCallback)}.
+     *
+     * @param filterNum   The filter number.
+     * @param multiSelect true to turn it on.
+     */
+    public void setMultiSelect(int filterNum, boolean multiSelect) {
+        FilterHolder filterHolder = getFilter(filterNum);
+        if (filterHolder != null) {
+            filterHolder.setMultiSelect(multiSelect);
+            updateFilter(filterHolder);
+        }
+    }
+
     /**
      * Perform a click on an option by code.
      *
      * @param filterHolder The unique filter number you want to click.
-     * @param filterId     The unique filter option ID you want to click. null means unselect all.
+     * @param filterId     The unique filter option ID you want to click. null means unselect all. In multi-select mode it toggles the option.
      */
     public <S> void optionSelect(FilterHolder<S> filterHolder, @Nullable S filterId) {
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.optionSelect");
+        try {
+            filterHolder.optionClicked(filterId);
 
-        filterHolder.optionClicked(filterId);
+            if (mShouldCloseAfterClick) {
+                close();
+            }
 
-        if (mShouldCloseAfterClick) {
-            close();
+            updateFilter(filterHolder);
+        } finally {
+            FilterTrace.end(tracer);
         }
-
-        updateFilter(filterHolder.getFilterNum());
     }
 
     /**
@@ -428,8 +719,21 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param count        New count.
      */
     public <S> void updateCertainOption(FilterHolder<S> filterHolder, S filterId, int count) {
-        filterHolder.getFilterButton(filterId).setResultCount(count);
-        updateFilter(filterHolder.getFilterNum());
+        filterHolder.getFilterButton(filterId).setResultCount(count, false);
+        updateFilter(filterHolder);
+    }
+
+    /**
+     * Update many options' count of a certain filter at once, the filter only get updated one time.
+     *
+     * @param filterHolder The certain filter to update.
+     * @param counts       New count for every option ID you want to update.
+     */
+    public <S> void updateCounts(FilterHolder<S> filterHolder, Map<S, Integer> counts) {
+        if (!filterHolder.updateCounts(counts)) {
+            mFilterErrorCallback.filterOptionNotExistError();
+        }
+        updateFilter(filterHolder);
     }
 
     /**
@@ -438,8 +742,10 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param filterNum The filter number you want to remove.
      */
     public void removeFilter(int filterNum) {
-        if (isFiltersValid(filterNum)) {
-            getFilter(filterNum).removeFilter();
+        FilterHolder filterHolder = getFilter(filterNum);
+        if (filterHolder != null) {
+            mOptionRevealer.cancel(filterHolder);
+            filterHolder.removeFilter();
             updateAllFilters();
         }
     }
@@ -470,49 +776,184 @@ public class FlexibleFilter<T> extends LinearLayout {
      * @param mOptionGetStringCallback For you to decide the text on the option.
      */
     public <S> void addFilterOption(final int filterNum, S filterId, int count, int width, int leftMargin, int rightMargin, int upDownMargin, OptionGetStringCallback<S> mOptionGetStringCallback) {
-        if (isFiltersValid(filterNum)) {
-            AutofitTextView autofitTextView = getModifiedTextView(width, leftMargin, rightMargin, upDownMargin);
-            getFilter(filterNum).addNewFilterButton(new Option<>(mContext, filterId, autofitTextView, count, mOptionGetStringCallback));
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.addFilterOption");
+        try {
+            FilterHolder<S> filterHolder = getFilter(filterNum);
+            if (filterHolder != null) {
+                filterHolder.addNewFilterButton(newOption(filterId, count, width, leftMargin, rightMargin, upDownMargin,
+                        mOptionGetStringCallback, null, AutofitHelper.Prefetcher.NOT_FITTED));
+
+                updateFilter(filterHolder);
+            }
+        } finally {
+            FilterTrace.end(tracer);
+        }
+    }
 
-            updateAllFilters();
+    /**
+     * Add many options to filter at once, the filter is measured and updated only once for all of them.
+     *
+     * @param filterNum   The filter number where you want to add options.
+     * @param optionSpecs The options to add.
+     */
+    public <S> void addFilterOptions(int filterNum, List<OptionSpec<S>> optionSpecs) {
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.addFilterOptions");
+        try {
+            FilterHolder<S> filterHolder = getFilter(filterNum);
+            if (filterHolder != null) {
+                List<Option<S>> options = new ArrayList<>(optionSpecs.size());
+                for (int i = 0; i < optionSpecs.size(); i++) {
+                    OptionSpec<S> optionSpec = optionSpecs.get(i);
+                    options.add(newOption(optionSpec.getFilterId(), optionSpec.getCount(), optionSpec.getWidth(), getLeftMargin(optionSpec),
+                            getRightMargin(optionSpec), getUpDownMargin(optionSpec), optionSpec.getOptionGetStringCallback(), null,
+                            AutofitHelper.Prefetcher.NOT_FITTED));
+                }
+                filterHolder.addNewFilterButtons(options);
+
+                updateFilter(filterHolder);
+            }
+        } finally {
+            FilterTrace.end(tracer);
+        }
+    }
+
+    /**
+     * Add many options without blocking the main thread. Texts of options are got, precomputed and autofitted on a
+     * background thread, then options are added a few per frame on the main thread. The filter is updated once
+     * when all of them are added.
+     * Note: {@link OptionGetStringCallback} of the options will be called on the background thread.
+     *
+     * @param filterNum   The filter number where you want to add options.
+     * @param optionSpecs The options to add.
+     * @param callback    Get called when all the options are added, can be null.
+     */
+    public <S> void addFilterOptionsAsync(int filterNum, final List<OptionSpec<S>> optionSpecs, @Nullable final OptionsPreparedCallback callback) {
+        final FilterHolder<S> filterHolder = getFilter(filterNum);
+        if (filterHolder == null) return;
+
+        // A view just like the options, to know their paddings, text params and autofit settings.
+        AutofitTextView templateView = getModifiedTextView(getScreenWidthPixel(mContext), 0, 0, 0);
+        templateView.setBackground(mOptionStyleCache.newBackground());
+        int horizontalPadding = templateView.getPaddingLeft() + templateView.getPaddingRight();
+
+        final List<OptionSpec<S>> specs = new ArrayList<>(optionSpecs);
+        int[] targetWidths = new int[specs.size()];
+        for (int i = 0; i < specs.size(); i++) {
+            OptionSpec<S> optionSpec = specs.get(i);
+            targetWidths[i] = optionSpec.getWidth() - getLeftMargin(optionSpec) - getRightMargin(optionSpec) - horizontalPadding;
         }
+
+        PrecomputedTextCompat.Params params = TextViewCompat.getTextMetricsParams(templateView);
+        OptionPreparer.prepare(specs, targetWidths, params, templateView.getAutofitHelper().newPrefetcher(),
+                new OptionPreparer.Callback<S>() {
+                    @Override
+                    public void prepared(List<OptionPreparer.PreparedOption<S>> preparedOptions) {
+                        addPreparedOptions(filterHolder, preparedOptions, callback);
+                    }
+                });
+    }
+
+    /**
+     * Evaluate selections on a worker thread every time an option is selected, by a click or by code.
+     * If selection changed again before a query is done, the query is cancelled and only the latest result is delivered.
+     *
+     * @param queryEvaluator      Find the result for selections, called on a worker thread. null to turn it off.
+     * @param queryResultCallback Get the latest result on the main thread.
+     */
+    public <R> void setAsyncQuery(@Nullable QueryEvaluator<R> queryEvaluator, @Nullable QueryResultCallback<R> queryResultCallback) {
+        if (mAsyncQueryRunner != null) {
+            mAsyncQueryRunner.cancel();
+            mAsyncQueryRunner = null;
+        }
+        if (queryEvaluator == null || queryResultCallback == null) return;
+
+        mAsyncQueryRunner = new AsyncQueryRunner<>(queryEvaluator, queryResultCallback, new AsyncQueryRunner.Delivery<R>() {
+            @Override
+            public void deliver(QueryResult<R> result, QueryResultCallback<R> callback) {
+                applyQueryCounts(result);
+                callback.queryEvaluated(result);
+            }
+        });
+    }
+
+    /**
+     * @return The selected option of every filter now.
+     */
+    public SelectionSnapshot getSelectionSnapshot() {
+        LinkedHashMap<Integer, List<Object>> selections = new LinkedHashMap<>();
+        for (int i = 0; i < mFilters.size(); i++) {
+            FilterHolder<Object> filterHolder = mFilters.get(i);
+            List<Object> selected;
+            if (filterHolder.isMultiSelect()) {
+                selected = filterHolder.getSelectedFilterIds();
+            } else if (filterHolder.getCurrentSelected() != null) {
+                selected = Collections.singletonList(filterHolder.getCurrentSelected());
+            } else {
+                selected = Collections.emptyList();
+            }
+            selections.put(filterHolder.getFilterNum(), selected);
+        }
+        return new SelectionSnapshot(selections);
     }
 
     /**
      * Open the Dropdown.
      */
     public void open() {
-        openAllOpeningFilter();
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.open");
+        try {
+            openAllOpeningFilter();
 
-        mFilterContainer.requestFocus();
+            mFilterContainer.requestFocus();
+        } finally {
+            FilterTrace.end(tracer);
+        }
     }
 
     /**
      * Close the dropDown.
      */
     public void close() {
-        closeAllOpeningFilter();
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.close");
+        try {
+            closeAllOpeningFilter();
+        } finally {
+            FilterTrace.end(tracer);
+        }
     }
 
-    public void setSelectedTextColor(int selectedTextColor) {
-        mSelectedTextColor = selectedTextColor;
-        updateAllFilters();
+    public FilterConfig getConfig() {
+        return mConfig;
     }
 
+    /**
+     * Change how options of this filter look and behave, other filters on the screen keep theirs.
+     * Only options whose look really changed are redrawn, options are only styled again when colors or backgrounds changed.
+     */
+    public void setConfig(FilterConfig config) {
+        if (config.equals(mConfig)) return;
+        mConfig = config;
+        // Before init, it's given to the options when they are made.
+        if (mOptionStyleCache == null) return;
 
-    public void setUnSelectedTextColor(int unSelectedTextColor) {
-        mUnSelectedTextColor = unSelectedTextColor;
+        mOptionStyleCache.setConfig(config);
         updateAllFilters();
     }
 
-    public void setSelectedBackground(int selectedBackground) {
-        mSelectedBackground = selectedBackground;
-        updateAllFilters();
+    public void setSelectedTextColor(@ColorRes int selectedTextColor) {
+        setConfig(mConfig.buildUpon().setSelectedTextColor(selectedTextColor).build());
     }
 
-    public void setUnSelectedBackground(int unSelectedBackground) {
-        mUnSelectedBackground = unSelectedBackground;
-        updateAllFilters();
+    public void setUnSelectedTextColor(@ColorRes int unSelectedTextColor) {
+        setConfig(mConfig.buildUpon().setUnSelectedTextColor(unSelectedTextColor).build());
+    }
+
+    public void setSelectedBackground(@DrawableRes int selectedBackground) {
+        setConfig(mConfig.buildUpon().setSelectedBackground(selectedBackground).build());
+    }
+
+    public void setUnSelectedBackground(@DrawableRes int unSelectedBackground) {
+        setConfig(mConfig.buildUpon().setUnSelectedBackground(unSelectedBackground).build());
     }
 
     public void setFilterColCount(int colCount) {
@@ -520,12 +961,45 @@ public class FlexibleFilter<T> extends LinearLayout {
         setOpeningFilters(new ArrayList<>(mCurrentOpeningFilters));
     }
 
+    public void setAnimationMode(AnimationMode animationMode) {
+        this.mAnimationMode = animationMode;
+    }
+
+    /**
+     * Measure frame times of open and close animations, null to stop. Use it to compare {@link AnimationMode}s.
+     */
+    public void setAnimationStatsCallback(@Nullable AnimationStatsCallback animationStatsCallback) {
+        this.mAnimationStatsCallback = animationStatsCallback;
+    }
+
+    /**
+     * Get timings and counters of updates, height measures, autofit and animation frames, {@link FilterMetrics#NONE} to stop.
+     * Set it before adding options, so the text views of all of them report their autofit.
+     */
+    public void setFilterMetrics(FilterMetrics filterMetrics) {
+        this.mFilterMetrics = filterMetrics;
+        mHeightMeasurer.setFilterMetrics(filterMetrics);
+    }
+
+    /**
+     * Open filters progressively: only options on the first screen are shown when a filter opens, and after it's opened,
+     * the rest are shown a few every frame within a time budget, so opening a filter with lots of options doesn't drop frames.
+     * It doesn't change {@link ContainerMode#RECYCLED} filters, which only have views on screen anyway.
+     */
+    public void setProgressiveOpen(boolean progressiveOpen) {
+        this.mIsProgressiveOpen = progressiveOpen;
+    }
+
+    public void setProgressiveOpenListener(@Nullable ProgressiveOpenListener progressiveOpenListener) {
+        mOptionRevealer.setProgressiveOpenListener(progressiveOpenListener);
+    }
+
     public void setShouldCloseAfterClick(boolean shouldCloseAfterClick) {
         this.mShouldCloseAfterClick = shouldCloseAfterClick;
     }
 
     public void setChangeColorWhenSelect(boolean changeColorWhenSelect) {
-        mChangeColorWhenSelect = changeColorWhenSelect;
+        setConfig(mConfig.buildUpon().setChangeColorWhenSelect(changeColorWhenSelect).build());
     }
 
     public View getTitleView() {
@@ -534,35 +1008,61 @@ public class FlexibleFilter<T> extends LinearLayout {
 
     private void closeAllOpeningFilter() {
         for (int i = 0; i < mCurrentOpeningFilters.size(); i++) {
-            if (isFiltersValid(mCurrentOpeningFilters.get(i))) {
-                if (getFilter(mCurrentOpeningFilters.get(i)).getHeight() == 0) {
-                    getFilter(mCurrentOpeningFilters.get(i)).readyToTakeHeight(true, true);
-                } else {
-                    closeAnim(getFilter(mCurrentOpeningFilters.get(i)).getContainer());
-                }
+            FilterHolder filterHolder = getFilter(mCurrentOpeningFilters.get(i));
+            if (filterHolder != null) {
+                // A height still waiting to be taken would show or hide it again.
+                mHeightMeasurer.cancel(filterHolder);
+                // Options not revealed yet would stay hidden after it, e.g. if it's opened without progressive mode next time.
+                mOptionRevealer.cancel(filterHolder);
+                filterHolder.revealAllOptions();
+                closeAnim(filterHolder.getContainer());
             }
         }
     }
 
-    private FilterHolder getFilter(int filterNum) {
-        for (int i = 0; i < mFilters.size(); i++) {
-            if (mFilters.get(i).getFilterNum() == filterNum){
-                return mFilters.get(i);
-            }
+    @SuppressWarnings("unchecked")
+    private <S> FilterHolder<S> getFilter(int filterNum) {
+        FilterHolder filterHolder = mFilterIndex.get(filterNum);
+        if (filterHolder == null) {
+            mFilterErrorCallback.noSuchFilterError(filterNum);
         }
-        mFilterErrorCallback.noSuchFilterError(filterNum);
-        return null;
+        return filterHolder;
     }
 
     public <S> FilterHolder<S> getFilter(int filterNum, Class<S> filterIdClass) {
-        for (int i = 0; i < mFilters.size(); i++) {
-            if (mFilters.get(i).getFilterNum() == filterNum){
-                FilterHolder filterHolder = mFilters.get(i);
-                return cast(filterHolder, filterIdClass);
+        FilterHolder filterHolder = getFilter(filterNum);
+        if (filterHolder == null) {
+            return null;
+        }
+        return cast(filterHolder, filterIdClass);
+    }
+
+    /**
+     * Find all the filters at once.
+     *
+     * @return The filters in the same order, null if any of them doesn't exist.
+     */
+    private List<FilterHolder> getFilters(List<Integer> filterNums) {
+        List<FilterHolder> filterHolders = new ArrayList<>(filterNums.size());
+        for (int i = 0; i < filterNums.size(); i++) {
+            FilterHolder filterHolder = getFilter(filterNums.get(i));
+            if (filterHolder == null) {
+                return null;
             }
+            filterHolders.add(filterHolder);
         }
-        mFilterErrorCallback.noSuchFilterError(filterNum);
-        return null;
+        return filterHolders;
+    }
+
+    FilterIndex getFilterIndex() {
+        return mFilterIndex;
+    }
+
+    /**
+     * Tests override it to count how many times we look up a filter.
+     */
+    FilterIndex newFilterIndex() {
+        return new FilterIndex();
     }
 
     public void setFilterOrientation(Orientation orientation) {
@@ -583,44 +1083,26 @@ public class FlexibleFilter<T> extends LinearLayout {
     }
 
     public void setShouldHideZeroFilters(boolean shouldHideZeroFilters) {
-        mShouldHideZeroFilters = shouldHideZeroFilters;
-        updateAllFilters();
+        setConfig(mConfig.buildUpon().setShouldHideZeroFilters(shouldHideZeroFilters).build());
     }
 
     public boolean isShouldHideAll() {
-        return mShouldHideAll;
+        return mConfig.isShouldHideAll();
     }
 
     public boolean isShouldHideZeroFilters() {
-        return mShouldHideZeroFilters;
+        return mConfig.isShouldHideZeroFilters();
     }
 
     public void setShouldHideAll(boolean shouldHideAll) {
-        mShouldHideAll = shouldHideAll;
-        updateAllFilters();
-    }
-
-    private boolean isFiltersValid(List<Integer> checkFilters) {
-        for (int i = 0; i < checkFilters.size(); i++) {
-            if (getFilter(checkFilters.get(i)) == null) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean isFiltersValid(int checkFilter) {
-        if (getFilter(checkFilter) == null) {
-            mFilterErrorCallback.noSuchFilterError(checkFilter);
-            return false;
-        }
-        return true;
+        setConfig(mConfig.buildUpon().setShouldHideAll(shouldHideAll).build());
     }
 
     private void hideAllOpeningContainer() {
         for (int i = 0; i < mCurrentOpeningFilters.size(); i++) {
-            if (isFiltersValid(mCurrentOpeningFilters.get(i))) {
-                getFilter(mCurrentOpeningFilters.get(i)).setContainerVisible(false);
+            FilterHolder filterHolder = getFilter(mCurrentOpeningFilters.get(i));
+            if (filterHolder != null) {
+                filterHolder.setContainerVisible(false);
             }
         }
     }
@@ -632,38 +1114,80 @@ public class FlexibleFilter<T> extends LinearLayout {
         return false;
     }
 
-    private void updateFilter(int filterNum) {
-        if (isFiltersValid(filterNum)) {
-            FilterHolder filterHolder = getFilter(filterNum);
-            if (mShouldHideZeroFilters) {
+    void updateFilter(FilterHolder filterHolder) {
+        if (mUpdateDepth > 0) {
+            mPendingUpdateFilters.add(filterHolder);
+        } else {
+            applyFilterUpdate(filterHolder);
+        }
+    }
+
+    private void applyFilterUpdate(FilterHolder filterHolder) {
+        FilterTrace.Tracer tracer = FilterTrace.begin("FlexibleFilter.updateFilter");
+        try {
+            boolean isMetered = mFilterMetrics != FilterMetrics.NONE;
+            long start = isMetered ? System.nanoTime() : 0;
+            if (mConfig.isShouldHideZeroFilters()) {
                 filterHolder.hideZeroOptions();
                 filterHolder.showNonZeroOptions();
             } else {
                 filterHolder.showAllOptions();
             }
-            if (!mShouldHideAll) {
+            if (!mConfig.isShouldHideAll()) {
                 filterHolder.setOptionVisible(0, true);
             } else {
                 filterHolder.setOptionVisible(0, false);
             }
-            filterHolder.updateAll();
+            int touchedOptionCount = filterHolder.updateAll();
+            if (isMetered) {
+                mFilterMetrics.filterUpdated(filterHolder.getFilterNum(), System.nanoTime() - start,
+                        filterHolder.getOptions().size(), touchedOptionCount);
+            }
+        } finally {
+            FilterTrace.end(tracer);
         }
     }
 
     private void openGenreSelectorLayout(int openFilter) {
-        if (getFilter(openFilter) == null) {
-            mFilterErrorCallback.noSuchFilterError(openFilter);
+        final FilterHolder filterHolder = getFilter(openFilter);
+        if (filterHolder == null) {
             return;
         }
-        FilterHolder filterHolder = getFilter(openFilter);
-        if (filterHolder.getHeight() == 0) {
-            filterHolder.readyToTakeHeight(false, true);
-//            filterHolder.mContainer
+        mHeightMeasurer.cancel(filterHolder);
+        mOptionRevealer.cancel(filterHolder);
+        final int deferredCount;
+        if (mIsProgressiveOpen && mContainerMode == ContainerMode.FLEXBOX) {
+            deferredCount = filterHolder.deferOptionsAfterFirstScreen(getFilterContainerWidth(), getScreenHeightPixel(mContext));
         } else {
-            filterHolder.setContainerVisible(true);
-            ValueAnimator va = createDropAnim(filterHolder.getContainer(), 0, filterHolder.getHeight());
-            va.start();
+            filterHolder.revealAllOptions();
+            deferredCount = 0;
         }
+        // Measured off-screen, so it's animated right away without showing it first to take the height.
+        int height = filterHolder.measureHeight(getFilterContainerWidth(), mFilterMetrics);
+        filterHolder.setContainerVisible(true);
+        ValueAnimator va = createAnim(filterHolder.getContainer(), 0, height);
+        if (deferredCount > 0) {
+            va.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    if (!filterHolder.isContainerVisible()) return;
+                    // The rest of the options come after the animation, the container grows with them.
+                    ViewGroup.LayoutParams layoutParams = filterHolder.getContainer().getLayoutParams();
+                    layoutParams.height = ViewGroup.LayoutParams.WRAP_CONTENT;
+                    filterHolder.getContainer().setLayoutParams(layoutParams);
+                    mOptionRevealer.start(filterHolder, deferredCount);
+                }
+            });
+        }
+        va.start();
+    }
+
+    /**
+     * Width filters get when they don't have their own width.
+     */
+    private int getFilterContainerWidth() {
+        int width = mFilterContainer.getWidth();
+        return width > 0 ? width : getScreenWidthPixel(mContext);
     }
 
     private void closeAnim(final View view) {
@@ -672,7 +1196,7 @@ public class FlexibleFilter<T> extends LinearLayout {
             view.measure(View.MeasureSpec.UNSPECIFIED, View.MeasureSpec.UNSPECIFIED);
             view.setVisibility(View.GONE);
         } else {
-            ValueAnimator va = createDropAnim(view, origHeight, 0);
+            ValueAnimator va = createAnim(view, origHeight, 0);
             va.addListener(new AnimatorListenerAdapter() {
 
                 @Override
@@ -684,13 +1208,119 @@ public class FlexibleFilter<T> extends LinearLayout {
         }
     }
 
+    /**
+     * Show counts from a query, every filter is updated once.
+     */
+    @SuppressWarnings("unchecked")
+    private void applyQueryCounts(QueryResult<?> result) {
+        beginUpdate();
+        try {
+            for (Map.Entry<Integer, Map<Object, Integer>> entry : result.getCounts().entrySet()) {
+                FilterHolder filterHolder = getFilter(entry.getKey());
+                if (filterHolder != null) {
+                    updateCounts(filterHolder, entry.getValue());
+                }
+            }
+        } finally {
+            commitUpdate();
+        }
+    }
+
+    /**
+     * Tests set it to 0 to add one prepared option every frame.
+     */
+    void setPreparedOptionsFrameBudgetNanos(long preparedOptionsFrameBudgetNanos) {
+        this.mPreparedOptionsFrameBudgetNanos = preparedOptionsFrameBudgetNanos;
+    }
+
+    /**
+     * Add prepared options within a time budget every frame, until all of them are added.
+     */
+    private <S> void addPreparedOptions(final FilterHolder<S> filterHolder, final List<OptionPreparer.PreparedOption<S>> preparedOptions,
+                                        @Nullable final OptionsPreparedCallback callback) {
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            private int mNext = 0;
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                long deadline = System.nanoTime() + mPreparedOptionsFrameBudgetNanos;
+                List<Option<S>> options = new ArrayList<>();
+                // At least one option every frame, so it always gets done.
+                while (mNext < preparedOptions.size()) {
+                    options.add(newPreparedOption(preparedOptions.get(mNext)));
+                    mNext++;
+                    if (System.nanoTime() >= deadline) {
+                        break;
+                    }
+                }
+                filterHolder.addNewFilterButtons(options);
+
+                if (mNext < preparedOptions.size()) {
+                    Choreographer.getInstance().postFrameCallback(this);
+                } else {
+                    updateFilter(filterHolder);
+                    if (callback != null) {
+                        callback.optionsPrepared(filterHolder.getFilterNum(), preparedOptions.size());
+                    }
+                }
+            }
+        });
+    }
+
+    private <S> Option<S> newPreparedOption(OptionPreparer.PreparedOption<S> preparedOption) {
+        OptionSpec<S> optionSpec = preparedOption.mOptionSpec;
+        return newOption(optionSpec.getFilterId(), optionSpec.getCount(), optionSpec.getWidth(), getLeftMargin(optionSpec),
+                getRightMargin(optionSpec), getUpDownMargin(optionSpec), optionSpec.getOptionGetStringCallback(), preparedOption.mText,
+                preparedOption.mTextSize);
+    }
+
+    /**
+     * In {@link ContainerMode#RECYCLED} mode the option doesn't get a view here, it only keeps its size for the view bound later.
+     *
+     * @param preparedText     The text prepared by {@link OptionPreparer}, null to get it from the callback.
+     * @param preparedTextSize The autofit text size the text is prepared in, {@link AutofitHelper.Prefetcher#NOT_FITTED} if none.
+     */
+    private <S> Option<S> newOption(S filterId, int count, int width, int leftMargin, int rightMargin, int upDownMargin,
+                                    OptionGetStringCallback<S> optionGetStringCallback, @Nullable CharSequence preparedText,
+                                    float preparedTextSize) {
+        AutofitTextView autofitTextView = null;
+        if (mContainerMode == ContainerMode.FLEXBOX) {
+            autofitTextView = getModifiedTextView(width, leftMargin, rightMargin, upDownMargin);
+            // The precomputed text only fits a view in the size it's precomputed in.
+            if (preparedTextSize != AutofitHelper.Prefetcher.NOT_FITTED) {
+                autofitTextView.getAutofitHelper().applyPrefetchedTextSize(preparedTextSize);
+            }
+        }
+
+        Option<S> option;
+        if (preparedText == null) {
+            option = new Option<>(mOptionStyleCache, filterId, autofitTextView, count, optionGetStringCallback);
+        } else {
+            option = new Option<>(mOptionStyleCache, filterId, autofitTextView, count, optionGetStringCallback, preparedText);
+        }
+        option.setLayout(width - (leftMargin + rightMargin), leftMargin, rightMargin, upDownMargin);
+        return option;
+    }
+
+    /**
+     * Default margins are the same as {@link #addFilterOption(int, Object, int, int, OptionGetStringCallback)}.
+     */
+    private int getLeftMargin(OptionSpec optionSpec) {
+        return optionSpec.getLeftMargin() == OptionSpec.DEFAULT_MARGIN ? dpToPixels(mContext, 8) : optionSpec.getLeftMargin();
+    }
+
+    private int getRightMargin(OptionSpec optionSpec) {
+        return optionSpec.getRightMargin() == OptionSpec.DEFAULT_MARGIN ? dpToPixels(mContext, 4) : optionSpec.getRightMargin();
+    }
+
+    private int getUpDownMargin(OptionSpec optionSpec) {
+        return optionSpec.getUpDownMargin() == OptionSpec.DEFAULT_MARGIN ? dpToPixels(mContext, 4) : optionSpec.getUpDownMargin();
+    }
+
     private AutofitTextView getModifiedTextView(int width, int marginLeft, int marginRight, int marginUpAndDown) {
         width -= (marginLeft + marginRight);
 
-        AutofitTextView autofitTextView = new AutofitTextView(mContext);
-        autofitTextView.setTextColor(ContextCompat.getColor(mContext, mUnSelectedTextColor));
-        autofitTextView.setBackground(ContextCompat.getDrawable(mContext, mUnSelectedBackground));
-        autofitTextView.setTextAlignment(TEXT_ALIGNMENT_CENTER);
+        AutofitTextView autofitTextView = newOptionTextView();
 
         LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(width, LayoutParams.WRAP_CONTENT);
         lp.setMargins(marginLeft, marginUpAndDown, marginRight, marginUpAndDown);
@@ -698,12 +1328,67 @@ public class FlexibleFilter<T> extends LinearLayout {
         return autofitTextView;
     }
 
+    private AutofitTextView newOptionTextView() {
+        AutofitTextView autofitTextView = new AutofitTextView(mContext);
+        autofitTextView.setTextAlignment(TEXT_ALIGNMENT_CENTER);
+        autofitTextView.getAutofitHelper().setFilterMetrics(mFilterMetrics);
+        return autofitTextView;
+    }
+
     private void openAllOpeningFilter() {
         for (int i = 0; i < mCurrentOpeningFilters.size(); i++) {
             openGenreSelectorLayout(mCurrentOpeningFilters.get(i));
         }
     }
 
+    private ValueAnimator createAnim(View view, int start, int end) {
+        ValueAnimator va;
+        if (mAnimationMode == AnimationMode.CLIP) {
+            va = createClipAnim(view, start, end);
+        } else {
+            va = createDropAnim(view, start, end);
+        }
+        if (mAnimationStatsCallback != null || mFilterMetrics != FilterMetrics.NONE) {
+            FrameStats.record(va, mAnimationMode, end > start, mAnimationStatsCallback, mFilterMetrics);
+        }
+        return va;
+    }
+
+    /**
+     * Lay the view out once with the bigger height, and only change its clip on a hardware layer,
+     * so nothing is measured or laid out on every frame.
+     */
+    private ValueAnimator createClipAnim(final View view, int start, int end) {
+        ViewGroup.LayoutParams layoutParams = view.getLayoutParams();
+        int height = Math.max(start, end);
+        if (layoutParams.height != height) {
+            layoutParams.height = height;
+            view.setLayoutParams(layoutParams);
+        }
+
+        final Rect clipBounds = new Rect();
+        clipBounds.set(0, 0, view.getWidth(), start);
+        view.setClipBounds(clipBounds);
+        view.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+
+        ValueAnimator va = ValueAnimator.ofInt(start, end);
+        va.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                clipBounds.set(0, 0, view.getWidth(), (int) animation.getAnimatedValue());
+                view.setClipBounds(clipBounds);
+            }
+        });
+        va.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                view.setClipBounds(null);
+                view.setLayerType(View.LAYER_TYPE_NONE, null);
+            }
+        });
+        return va;
+    }
+
     private ValueAnimator createDropAnim(final View view, int start, int end) {
         ValueAnimator va = ValueAnimator.ofInt(start, end);
         va.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
@@ -730,6 +1415,11 @@ public class FlexibleFilter<T> extends LinearLayout {
         return displayMetrics.widthPixels;
     }
 
+    private int getScreenHeightPixel(Context context) {
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        return displayMetrics.heightPixels;
+    }
+
     @SuppressWarnings("unchecked")
     public <S> FilterHolder<S> cast(FilterHolder filterHolder, Class<S> classOfS){
         if(classOfS.isAssignableFrom(filterHolder.getAllFilterIds().get(0).getClass())){
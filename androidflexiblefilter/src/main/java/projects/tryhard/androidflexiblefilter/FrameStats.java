@@ -0,0 +1,112 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.support.annotation.Nullable;
+
+import java.util.Locale;
+
+/**
+ * Frame times of one open or close animation, to compare animation modes on big filters.
+ * A frame is the time between two updates of the animation.
+ */
+public final class FrameStats {
+    /**
+     * Frames longer than this miss a 60 fps frame.
+     */
+    public static final long SLOW_FRAME_NANOS = 16_666_667L;
+    static final long NO_FRAME = -1;
+
+    private final FlexibleFilter.AnimationMode mAnimationMode;
+    private final boolean mIsOpening;
+    private int mFrameCount = 0;
+    private int mSlowFrameCount = 0;
+    private long mTotalFrameNanos = 0;
+    private long mMaxFrameNanos = 0;
+    private long mLastFrameNanos = 0;
+
+    private FrameStats(FlexibleFilter.AnimationMode animationMode, boolean isOpening) {
+        this.mAnimationMode = animationMode;
+        this.mIsOpening = isOpening;
+    }
+
+    /**
+     * Record frames of the animator, the metrics get every frame time and the callback gets the stats when it ends.
+     *
+     * @param callback null to only send frames to the metrics.
+     */
+    static void record(ValueAnimator animator, FlexibleFilter.AnimationMode animationMode, final boolean isOpening,
+                       @Nullable final FlexibleFilter.AnimationStatsCallback callback, final FilterMetrics filterMetrics) {
+        final FrameStats frameStats = new FrameStats(animationMode, isOpening);
+        animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                long frameTime = frameStats.frame(System.nanoTime());
+                if (frameTime != NO_FRAME) {
+                    filterMetrics.animationFrame(isOpening, frameTime);
+                }
+            }
+        });
+        if (callback != null) {
+            animator.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    callback.animationEnded(frameStats);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return Time since the update before, {@link #NO_FRAME} for the first update.
+     */
+    long frame(long frameNanos) {
+        long frameTime = NO_FRAME;
+        if (mLastFrameNanos != 0) {
+            frameTime = frameNanos - mLastFrameNanos;
+            mFrameCount++;
+            mTotalFrameNanos += frameTime;
+            mMaxFrameNanos = Math.max(mMaxFrameNanos, frameTime);
+            if (frameTime > SLOW_FRAME_NANOS) {
+                mSlowFrameCount++;
+            }
+        }
+        mLastFrameNanos = frameNanos;
+        return frameTime;
+    }
+
+    public FlexibleFilter.AnimationMode getAnimationMode() {
+        return mAnimationMode;
+    }
+
+    /**
+     * @return true for opening, false for closing.
+     */
+    public boolean isOpening() {
+        return mIsOpening;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getSlowFrameCount() {
+        return mSlowFrameCount;
+    }
+
+    public long getAverageFrameNanos() {
+        return mFrameCount == 0 ? 0 : mTotalFrameNanos / mFrameCount;
+    }
+
+    public long getMaxFrameNanos() {
+        return mMaxFrameNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %s: %d frames, avg %.2fms, max %.2fms, %d slow",
+                mAnimationMode, mIsOpening ? "open" : "close", mFrameCount,
+                getAverageFrameNanos() / 1e6, mMaxFrameNanos / 1e6, mSlowFrameCount);
+    }
+}
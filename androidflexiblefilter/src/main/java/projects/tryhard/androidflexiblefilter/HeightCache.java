@@ -0,0 +1,60 @@
+package projects.tryhard.androidflexiblefilter;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Heights of a filter container by the width it's measured with and the options shown, so opening a filter again
+ * doesn't measure it again. Only the last few are kept.
+ */
+final class HeightCache {
+    static final int NO_HEIGHT = -1;
+    private static final int MAX_SIZE = 8;
+
+    private final Map<Key, Integer> mHeights = new LinkedHashMap<Key, Integer>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Integer> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * @return The height kept, {@link #NO_HEIGHT} if there is none.
+     */
+    int get(int widthMeasureSpec, BitSet visibleOptions) {
+        Integer height = mHeights.get(new Key(widthMeasureSpec, visibleOptions));
+        return height == null ? NO_HEIGHT : height;
+    }
+
+    void put(int widthMeasureSpec, BitSet visibleOptions, int height) {
+        mHeights.put(new Key(widthMeasureSpec, (BitSet) visibleOptions.clone()), height);
+    }
+
+    void clear() {
+        mHeights.clear();
+    }
+
+    private static final class Key {
+        private final int mWidthMeasureSpec;
+        private final BitSet mVisibleOptions;
+
+        Key(int widthMeasureSpec, BitSet visibleOptions) {
+            this.mWidthMeasureSpec = widthMeasureSpec;
+            this.mVisibleOptions = visibleOptions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return mWidthMeasureSpec == key.mWidthMeasureSpec && mVisibleOptions.equals(key.mVisibleOptions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * mWidthMeasureSpec + mVisibleOptions.hashCode();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Take heights of the filters of one {@link FlexibleFilter} on the main thread. Requests coming before the next
+ * frame are put together, and all of them are taken once in a pre-draw, right after the filters are measured.
+ */
+final class HeightMeasurer {
+    private final View mRootView;
+    /**
+     * Filters waiting for their heights, and if the filter should be gone after it.
+     */
+    private final Map<FilterHolder<?>, Boolean> mPendingFilters = new LinkedHashMap<>();
+    private ViewTreeObserver mViewTreeObserver;
+    private FilterMetrics mFilterMetrics = FilterMetrics.NONE;
+
+    private final ViewTreeObserver.OnPreDrawListener mOnPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+        @Override
+        public boolean onPreDraw() {
+            removeListener();
+            return takeHeights();
+        }
+    };
+
+    HeightMeasurer(View rootView) {
+        this.mRootView = rootView;
+    }
+
+    /**
+     * Take the height of a filter in the next frame, the filter should be visible and laid out by then.
+     *
+     * @param shouldSetToGoneWhenDone Hide the filter after its height is taken.
+     * @param force                   false to keep what a request still waiting wants to do after it.
+     */
+    void request(FilterHolder<?> filterHolder, boolean shouldSetToGoneWhenDone, boolean force) {
+        Boolean pendingShouldSetToGone = mPendingFilters.get(filterHolder);
+        if (pendingShouldSetToGone != null && !force) {
+            shouldSetToGoneWhenDone = pendingShouldSetToGone;
+        }
+        mPendingFilters.put(filterHolder, shouldSetToGoneWhenDone);
+
+        if (mViewTreeObserver == null) {
+            mViewTreeObserver = mRootView.getViewTreeObserver();
+            mViewTreeObserver.addOnPreDrawListener(mOnPreDrawListener);
+        }
+    }
+
+    void setFilterMetrics(FilterMetrics filterMetrics) {
+        this.mFilterMetrics = filterMetrics;
+    }
+
+    void cancel(FilterHolder<?> filterHolder) {
+        mPendingFilters.remove(filterHolder);
+        if (mPendingFilters.isEmpty()) {
+            removeListener();
+        }
+    }
+
+    /**
+     * @return false to skip drawing this frame when any filter is hidden, so it isn't drawn for one frame.
+     */
+    private boolean takeHeights() {
+        boolean isMetered = mFilterMetrics != FilterMetrics.NONE;
+        long start = isMetered ? System.nanoTime() : 0;
+        List<Map.Entry<FilterHolder<?>, Boolean>> filters = new ArrayList<>(mPendingFilters.entrySet());
+        mPendingFilters.clear();
+
+        boolean isAnyHidden = false;
+        for (int i = 0; i < filters.size(); i++) {
+            boolean shouldSetToGoneWhenDone = filters.get(i).getValue();
+            filters.get(i).getKey().heightTaken(shouldSetToGoneWhenDone);
+            isAnyHidden |= shouldSetToGoneWhenDone;
+        }
+        if (isMetered) {
+            mFilterMetrics.heightsTaken(System.nanoTime() - start, filters.size());
+        }
+        return !isAnyHidden;
+    }
+
+    private void removeListener() {
+        if (mViewTreeObserver == null) return;
+        // The observer we added to may be merged into the one of the window after it's attached.
+        ViewTreeObserver viewTreeObserver = mViewTreeObserver.isAlive() ? mViewTreeObserver : mRootView.getViewTreeObserver();
+        viewTreeObserver.removeOnPreDrawListener(mOnPreDrawListener);
+        mViewTreeObserver = null;
+    }
+}
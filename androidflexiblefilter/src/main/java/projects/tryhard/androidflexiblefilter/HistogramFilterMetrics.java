@@ -0,0 +1,218 @@
+package projects.tryhard.androidflexiblefilter;
+
+import java.util.Locale;
+
+/**
+ * Keeps every timing of {@link FilterMetrics} in a histogram and adds up the counters, so you can read them
+ * once in a while and send them to your telemetry, e.g. when the screen is left, then {@link #reset()} it.
+ * Like the filter, it should only be used on the main thread.
+ */
+public final class HistogramFilterMetrics implements FilterMetrics {
+    private final Histogram mFilterUpdates = new Histogram();
+    private final Histogram mAllFiltersUpdates = new Histogram();
+    private final Histogram mHeightsTaken = new Histogram();
+    private final Histogram mHeightMeasures = new Histogram();
+    private final Histogram mAutofitSolves = new Histogram();
+    private final Histogram mOpenFrames = new Histogram();
+    private final Histogram mCloseFrames = new Histogram();
+    private long mOptionCount = 0;
+    private long mTouchedOptionCount = 0;
+    private long mHeightCacheHitCount = 0;
+    private long mAutofitCacheHitCount = 0;
+
+    @Override
+    public void filterUpdated(int filterNum, long durationNanos, int optionCount, int touchedOptionCount) {
+        mFilterUpdates.record(durationNanos);
+        mOptionCount += optionCount;
+        mTouchedOptionCount += touchedOptionCount;
+    }
+
+    @Override
+    public void allFiltersUpdated(long durationNanos, int filterCount) {
+        mAllFiltersUpdates.record(durationNanos);
+    }
+
+    @Override
+    public void heightsTaken(long durationNanos, int filterCount) {
+        mHeightsTaken.record(durationNanos);
+    }
+
+    @Override
+    public void heightMeasured(int filterNum, long durationNanos, boolean isCacheHit) {
+        mHeightMeasures.record(durationNanos);
+        if (isCacheHit) {
+            mHeightCacheHitCount++;
+        }
+    }
+
+    @Override
+    public void autofitSolved(long durationNanos, boolean isCacheHit) {
+        mAutofitSolves.record(durationNanos);
+        if (isCacheHit) {
+            mAutofitCacheHitCount++;
+        }
+    }
+
+    @Override
+    public void animationFrame(boolean isOpening, long frameNanos) {
+        if (isOpening) {
+            mOpenFrames.record(frameNanos);
+        } else {
+            mCloseFrames.record(frameNanos);
+        }
+    }
+
+    public Histogram getFilterUpdates() {
+        return mFilterUpdates;
+    }
+
+    public Histogram getAllFiltersUpdates() {
+        return mAllFiltersUpdates;
+    }
+
+    public Histogram getHeightsTaken() {
+        return mHeightsTaken;
+    }
+
+    public Histogram getHeightMeasures() {
+        return mHeightMeasures;
+    }
+
+    public Histogram getAutofitSolves() {
+        return mAutofitSolves;
+    }
+
+    public Histogram getOpenFrames() {
+        return mOpenFrames;
+    }
+
+    public Histogram getCloseFrames() {
+        return mCloseFrames;
+    }
+
+    /**
+     * @return Options gone through by all the filter updates.
+     */
+    public long getOptionCount() {
+        return mOptionCount;
+    }
+
+    /**
+     * @return Options changed by all the filter updates, the others were already up to date.
+     */
+    public long getTouchedOptionCount() {
+        return mTouchedOptionCount;
+    }
+
+    public long getHeightCacheHitCount() {
+        return mHeightCacheHitCount;
+    }
+
+    public long getAutofitCacheHitCount() {
+        return mAutofitCacheHitCount;
+    }
+
+    public void reset() {
+        mFilterUpdates.reset();
+        mAllFiltersUpdates.reset();
+        mHeightsTaken.reset();
+        mHeightMeasures.reset();
+        mAutofitSolves.reset();
+        mOpenFrames.reset();
+        mCloseFrames.reset();
+        mOptionCount = 0;
+        mTouchedOptionCount = 0;
+        mHeightCacheHitCount = 0;
+        mAutofitCacheHitCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "updates %s, updateAll %s, heightsTaken %s, heightMeasures %s (%d hit), "
+                        + "autofit %s (%d hit), openFrames %s, closeFrames %s, options %d touched of %d",
+                mFilterUpdates, mAllFiltersUpdates, mHeightsTaken, mHeightMeasures, mHeightCacheHitCount,
+                mAutofitSolves, mAutofitCacheHitCount, mOpenFrames, mCloseFrames, mTouchedOptionCount, mOptionCount);
+    }
+
+    /**
+     * Durations in buckets by powers of two of nanoseconds, so it's the same small size however many are recorded.
+     * Percentiles are the upper bound of the bucket they fall in, which is at most twice the real one.
+     */
+    public static final class Histogram {
+        private static final int BUCKET_COUNT = 64;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+        private long mCount = 0;
+        private long mTotalNanos = 0;
+        private long mMaxNanos = 0;
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            mBuckets[bucketOf(nanos)]++;
+            mCount++;
+            mTotalNanos += nanos;
+            mMaxNanos = Math.max(mMaxNanos, nanos);
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                mBuckets[i] = 0;
+            }
+            mCount = 0;
+            mTotalNanos = 0;
+            mMaxNanos = 0;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        public long getAverageNanos() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        /**
+         * @param percentile From 0 to 100.
+         * @return 0 if nothing is recorded.
+         */
+        public long getPercentileNanos(double percentile) {
+            if (mCount == 0) return 0;
+            long rank = (long) Math.ceil(mCount * Math.min(Math.max(percentile, 0), 100) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += mBuckets[i];
+                if (seen >= Math.max(rank, 1)) {
+                    return Math.min(upperBoundOf(i), mMaxNanos);
+                }
+            }
+            return mMaxNanos;
+        }
+
+        /**
+         * Bucket 0 is 0 and 1ns, bucket i is [2^i, 2^(i+1)).
+         */
+        private static int bucketOf(long nanos) {
+            return nanos <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+        }
+
+        private static long upperBoundOf(int bucket) {
+            return bucket >= 62 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d avg=%.3fms p50=%.3fms p99=%.3fms max=%.3fms", mCount,
+                    getAverageNanos() / 1e6, getPercentileNanos(50) / 1e6, getPercentileNanos(99) / 1e6, mMaxNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package projects.tryhard.androidflexiblefilter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A compressed set of non-negative int ids, split like a Roaring bitmap. Ids are grouped by their high 16 bits,
+ * every group is a sorted array when it's small and a 65536 bit bitmap when it's big, so intersecting and
+ * counting big groups are ANDs and bit counts of longs.
+ */
+final class IdBitmap {
+    /**
+     * A group with more ids than this is kept as a bitmap, it's where the bitmap takes less memory.
+     */
+    static final int ARRAY_MAX_SIZE = 4096;
+    private static final int DEFAULT_CAPACITY = 4;
+
+    /**
+     * High 16 bits of every group, sorted.
+     */
+    private char[] mKeys;
+    private Container[] mContainers;
+    private int mSize;
+
+    IdBitmap() {
+        mKeys = new char[DEFAULT_CAPACITY];
+        mContainers = new Container[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * @return true if the id is added, false if it's already in.
+     */
+    boolean add(int id) {
+        char key = highBits(id);
+        int index = indexOf(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        Container container = mContainers[index];
+        int cardinality = container.cardinality();
+        mContainers[index] = container.add(lowBits(id));
+        return mContainers[index].cardinality() != cardinality;
+    }
+
+    /**
+     * @return true if the id is removed, false if it's not in.
+     */
+    boolean remove(int id) {
+        int index = indexOf(highBits(id));
+        if (index < 0) return false;
+
+        Container container = mContainers[index];
+        int cardinality = container.cardinality();
+        container = container.remove(lowBits(id));
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            mContainers[index] = container;
+        }
+        return container.cardinality() != cardinality;
+    }
+
+    boolean contains(int id) {
+        int index = indexOf(highBits(id));
+        return index >= 0 && mContainers[index].contains(lowBits(id));
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < mSize; i++) {
+            cardinality += mContainers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    void clear() {
+        Arrays.fill(mContainers, 0, mSize, null);
+        mSize = 0;
+    }
+
+    /**
+     * @return A new bitmap with ids in both bitmaps.
+     */
+    IdBitmap and(IdBitmap other) {
+        IdBitmap result = new IdBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < mSize && j < other.mSize) {
+            if (mKeys[i] < other.mKeys[j]) {
+                i++;
+            } else if (mKeys[i] > other.mKeys[j]) {
+                j++;
+            } else {
+                Container container = mContainers[i].and(other.mContainers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.mSize, mKeys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Union of many bitmaps in one pass, every group is ORed from all the bitmaps at once.
+     *
+     * @return A new bitmap with ids in any of the bitmaps.
+     */
+    static IdBitmap or(List<IdBitmap> bitmaps) {
+        IdBitmap result = new IdBitmap();
+        int[] indexes = new int[bitmaps.size()];
+        long[] words = new long[BitmapContainer.WORD_COUNT];
+        while (true) {
+            int key = -1;
+            for (int i = 0; i < bitmaps.size(); i++) {
+                IdBitmap bitmap = bitmaps.get(i);
+                if (indexes[i] < bitmap.mSize && (key == -1 || bitmap.mKeys[indexes[i]] < key)) {
+                    key = bitmap.mKeys[indexes[i]];
+                }
+            }
+            if (key == -1) break;
+
+            Arrays.fill(words, 0);
+            for (int i = 0; i < bitmaps.size(); i++) {
+                IdBitmap bitmap = bitmaps.get(i);
+                if (indexes[i] < bitmap.mSize && bitmap.mKeys[indexes[i]] == key) {
+                    bitmap.mContainers[indexes[i]].orInto(words);
+                    indexes[i]++;
+                }
+            }
+            result.insertContainer(result.mSize, (char) key, Container.fromWords(words));
+        }
+        return result;
+    }
+
+    /**
+     * Same as the cardinality of {@link #and(IdBitmap)} without creating it.
+     */
+    int andCardinality(IdBitmap other) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < mSize && j < other.mSize) {
+            if (mKeys[i] < other.mKeys[j]) {
+                i++;
+            } else if (mKeys[i] > other.mKeys[j]) {
+                j++;
+            } else {
+                cardinality += mContainers[i].andCardinality(other.mContainers[j]);
+                i++;
+                j++;
+            }
+        }
+        return cardinality;
+    }
+
+    /**
+     * Don't change the bitmap while going through it.
+     */
+    IdIterator iterator() {
+        return new IdIterator() {
+            private int mIndex = -1;
+            private Container.LowIterator mLowIterator;
+
+            @Override
+            public boolean hasNext() {
+                while (mLowIterator == null || !mLowIterator.hasNext()) {
+                    if (mIndex + 1 >= mSize) return false;
+                    mIndex++;
+                    mLowIterator = mContainers[mIndex].lowIterator();
+                }
+                return true;
+            }
+
+            @Override
+            public int next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (mKeys[mIndex] << 16) | mLowIterator.next();
+            }
+        };
+    }
+
+    private int indexOf(char key) {
+        // Ids mostly come in ascending order, check the last group first.
+        if (mSize > 0 && mKeys[mSize - 1] == key) {
+            return mSize - 1;
+        }
+        return Arrays.binarySearch(mKeys, 0, mSize, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (mSize == mKeys.length) {
+            mKeys = Arrays.copyOf(mKeys, mSize * 2);
+            mContainers = Arrays.copyOf(mContainers, mSize * 2);
+        }
+        System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+        System.arraycopy(mContainers, index, mContainers, index + 1, mSize - index);
+        mKeys[index] = key;
+        mContainers[index] = container;
+        mSize++;
+    }
+
+    private void removeContainer(int index) {
+        System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+        System.arraycopy(mContainers, index + 1, mContainers, index, mSize - index - 1);
+        mSize--;
+        mContainers[mSize] = null;
+    }
+
+    private static char highBits(int id) {
+        return (char) (id >>> 16);
+    }
+
+    private static char lowBits(int id) {
+        return (char) id;
+    }
+
+    /**
+     * Low 16 bits of the ids in a group. Changes may return another kind of container.
+     */
+    private abstract static class Container {
+        interface LowIterator {
+            boolean hasNext();
+
+            char next();
+        }
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract LowIterator lowIterator();
+
+        /**
+         * Set bits of the ids in a 65536 bit bitmap.
+         */
+        abstract void orInto(long[] words);
+
+        /**
+         * @return A container with the set bits of the bitmap, the bitmap is copied.
+         */
+        static Container fromWords(long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX_SIZE) {
+                return new BitmapContainer(words.clone(), cardinality);
+            }
+            return BitmapContainer.toArrayContainer(words, cardinality);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] mValues;
+        private int mCardinality;
+
+        ArrayContainer() {
+            mValues = new char[DEFAULT_CAPACITY];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.mValues = values;
+            this.mCardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(mValues, 0, mCardinality, low);
+            if (index >= 0) return this;
+            if (mCardinality >= ARRAY_MAX_SIZE) {
+                return toBitmapContainer().add(low);
+            }
+
+            index = -index - 1;
+            if (mCardinality == mValues.length) {
+                mValues = Arrays.copyOf(mValues, Math.min(Math.max(mCardinality * 2, DEFAULT_CAPACITY), ARRAY_MAX_SIZE));
+            }
+            System.arraycopy(mValues, index, mValues, index + 1, mCardinality - index);
+            mValues[index] = low;
+            mCardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(mValues, 0, mCardinality, low);
+            if (index < 0) return this;
+            System.arraycopy(mValues, index + 1, mValues, index, mCardinality - index - 1);
+            mCardinality--;
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(mValues, 0, mCardinality, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] values = new char[Math.min(mCardinality, other.cardinality())];
+            int cardinality = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < mCardinality && j < array.mCardinality) {
+                    if (mValues[i] < array.mValues[j]) {
+                        i++;
+                    } else if (mValues[i] > array.mValues[j]) {
+                        j++;
+                    } else {
+                        values[cardinality++] = mValues[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < mCardinality; i++) {
+                    if (other.contains(mValues[i])) {
+                        values[cardinality++] = mValues[i];
+                    }
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int cardinality = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < mCardinality && j < array.mCardinality) {
+                    if (mValues[i] < array.mValues[j]) {
+                        i++;
+                    } else if (mValues[i] > array.mValues[j]) {
+                        j++;
+                    } else {
+                        cardinality++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < mCardinality; i++) {
+                    if (other.contains(mValues[i])) {
+                        cardinality++;
+                    }
+                }
+            }
+            return cardinality;
+        }
+
+        @Override
+        LowIterator lowIterator() {
+            return new LowIterator() {
+                private int mIndex = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return mIndex < mCardinality;
+                }
+
+                @Override
+                public char next() {
+                    return mValues[mIndex++];
+                }
+            };
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < mCardinality; i++) {
+                words[mValues[i] >>> 6] |= 1L << mValues[i];
+            }
+        }
+
+        private BitmapContainer toBitmapContainer() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < mCardinality; i++) {
+                bitmap.add(mValues[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private static final int WORD_COUNT = (1 << 16) / 64;
+
+        private final long[] mWords;
+        private int mCardinality;
+
+        BitmapContainer() {
+            mWords = new long[WORD_COUNT];
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.mWords = words;
+            this.mCardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            long bit = 1L << low;
+            int index = low >>> 6;
+            if ((mWords[index] & bit) == 0) {
+                mWords[index] |= bit;
+                mCardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long bit = 1L << low;
+            int index = low >>> 6;
+            if ((mWords[index] & bit) == 0) return this;
+            mWords[index] &= ~bit;
+            mCardinality--;
+            if (mCardinality <= ARRAY_MAX_SIZE) {
+                return toArrayContainer();
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (mWords[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return mCardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (!(other instanceof BitmapContainer)) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).mWords;
+            long[] words = new long[WORD_COUNT];
+            int cardinality = 0;
+            for (int i = 0; i < WORD_COUNT; i++) {
+                words[i] = mWords[i] & otherWords[i];
+                cardinality += Long.bitCount(words[i]);
+            }
+            BitmapContainer result = new BitmapContainer(words, cardinality);
+            return cardinality > ARRAY_MAX_SIZE ? result : result.toArrayContainer();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (!(other instanceof BitmapContainer)) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).mWords;
+            int cardinality = 0;
+            for (int i = 0; i < WORD_COUNT; i++) {
+                cardinality += Long.bitCount(mWords[i] & otherWords[i]);
+            }
+            return cardinality;
+        }
+
+        @Override
+        LowIterator lowIterator() {
+            return new LowIterator() {
+                private int mIndex = 0;
+                private long mWord = mWords[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (mWord == 0) {
+                        if (mIndex + 1 >= WORD_COUNT) return false;
+                        mWord = mWords[++mIndex];
+                    }
+                    return true;
+                }
+
+                @Override
+                public char next() {
+                    hasNext();
+                    int bit = Long.numberOfTrailingZeros(mWord);
+                    mWord &= mWord - 1;
+                    return (char) ((mIndex << 6) + bit);
+                }
+            };
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < WORD_COUNT; i++) {
+                words[i] |= mWords[i];
+            }
+        }
+
+        private ArrayContainer toArrayContainer() {
+            return toArrayContainer(mWords, mCardinality);
+        }
+
+        static ArrayContainer toArrayContainer(long[] words, int cardinality) {
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < WORD_COUNT; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, size);
+        }
+    }
+}
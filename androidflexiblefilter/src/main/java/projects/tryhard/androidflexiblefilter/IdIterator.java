@@ -0,0 +1,14 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * Go through item ids in ascending order without putting them in a list.
+ */
+public interface IdIterator {
+    boolean hasNext();
+
+    /**
+     * @return The next item id.
+     * @throws java.util.NoSuchElementException If there are no more ids.
+     */
+    int next();
+}
@@ -0,0 +1,59 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * A range of numbers from {@link #getFrom()} (included) to {@link #getTo()} (not included), used as the filterId of
+ * an option of a range facet. Get them from {@link RangeBuckets#getRanges()}.
+ */
+public final class NumericRange {
+    private final double mFrom;
+    private final double mTo;
+
+    public NumericRange(double from, double to) {
+        this.mFrom = from;
+        this.mTo = to;
+    }
+
+    public double getFrom() {
+        return mFrom;
+    }
+
+    public double getTo() {
+        return mTo;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof NumericRange)) return false;
+        NumericRange that = (NumericRange) o;
+        return Double.compare(that.mFrom, mFrom) == 0 && Double.compare(that.mTo, mTo) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long from = Double.doubleToLongBits(mFrom);
+        long to = Double.doubleToLongBits(mTo);
+        return 31 * (int) (from ^ (from >>> 32)) + (int) (to ^ (to >>> 32));
+    }
+
+    /**
+     * Like "0-20", "20-" for a range without end and "<20" for a range without start.
+     */
+    @Override
+    public String toString() {
+        if (Double.isInfinite(mFrom)) {
+            return "<" + format(mTo);
+        }
+        if (Double.isInfinite(mTo)) {
+            return format(mFrom) + "-";
+        }
+        return format(mFrom) + "-" + format(mTo);
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return String.valueOf(value);
+    }
+}
@@ -1,62 +1,299 @@
 package projects.tryhard.androidflexiblefilter;
 
 import android.content.Context;
-import android.support.v4.content.ContextCompat;
+import android.support.annotation.Nullable;
+import android.support.v4.text.PrecomputedTextCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.view.View;
 
 import projects.tryhard.androidflexiblefilter.FlexibleFilter.OptionGetStringCallback;
 
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mChangeColorWhenSelect;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mSelectedBackground;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mSelectedTextColor;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mUnSelectedBackground;
-import static projects.tryhard.androidflexiblefilter.FlexibleFilter.mUnSelectedTextColor;
-
 /**
  * Hold option variables we need.
  */
 public class Option<T> {
-    private Context mContext;
+    private static final int STATE_UNKNOWN = -1;
+    private static final int STATE_UNSELECTED = 0;
+    private static final int STATE_SELECTED = 1;
+
+    private OptionStyleCache mOptionStyleCache;
     private T filterId;
+    /**
+     * Null when the option isn't showing in {@link FlexibleFilter.ContainerMode#RECYCLED} mode.
+     */
     private AutofitTextView autofitTextView;
     private int resultCount;
     private OptionGetStringCallback<T> mOptionGetStringCallback;
+    private boolean mIsVisible = true;
+    /**
+     * Kept hidden while a filter is opened progressively, until it's revealed.
+     */
+    private boolean mIsDeferred = false;
+
+    /**
+     * Size of the option view, only used in {@link FlexibleFilter.ContainerMode#RECYCLED} mode
+     * since the views are created later.
+     */
+    private int mWidth;
+    private int mLeftMargin;
+    private int mRightMargin;
+    private int mUpDownMargin;
+
+    /**
+     * The state the option should be in.
+     */
+    private int mState = STATE_UNSELECTED;
+    /**
+     * What we last applied to the view, so we can skip the work when nothing changed.
+     */
+    private int mAppliedState = STATE_UNKNOWN;
+    private int mAppliedStyleGeneration;
+    private int mAppliedCount;
+    private int mAppliedTextGeneration;
+    private String mAppliedText;
+    /**
+     * Set when the text shown changes, a longer text may be shrunk by autofit and change the height of the filter.
+     */
+    private boolean mIsTextChanged = false;
 
+    /**
+     * @deprecated An option made this way resolves its own style with {@link FilterConfig#DEFAULT} instead of sharing
+     * the style and config of a filter, and it can't be added to one. Add options by
+     * {@link FlexibleFilter#addFilterOption(int, Object, int, int, OptionGetStringCallback)} instead.
+     */
+    @Deprecated
     public Option(Context context, T filterId, AutofitTextView autofitTextView, int resultCount, OptionGetStringCallback<T> optionGetStringCallback) {
-        this.mContext = context;
+        this(new OptionStyleCache(context, FilterConfig.DEFAULT), filterId, autofitTextView, resultCount, optionGetStringCallback);
+    }
+
+    /**
+     * @param optionStyleCache The style shared with other options of the same {@link FlexibleFilter}.
+     * @param autofitTextView  The view of the option, null if it will be bound later by {@link #bindView(AutofitTextView)}.
+     */
+    Option(OptionStyleCache optionStyleCache, T filterId, @Nullable AutofitTextView autofitTextView, int resultCount, OptionGetStringCallback<T> optionGetStringCallback) {
+        this.mOptionStyleCache = optionStyleCache;
         this.filterId = filterId;
         this.autofitTextView = autofitTextView;
         this.resultCount = resultCount;
         this.mOptionGetStringCallback = optionGetStringCallback;
 
-        autofitTextView.setText(optionGetStringCallback.getString(filterId, resultCount));
+        mAppliedText = optionGetStringCallback.getString(filterId, resultCount);
+        mAppliedCount = resultCount;
+        mAppliedTextGeneration = mOptionStyleCache.getTextGeneration();
+        if (autofitTextView != null) {
+            autofitTextView.setText(mAppliedText);
+        }
+        applyState(STATE_UNSELECTED);
     }
 
-    public void invalidate(boolean isSelected) {
-        if (isSelected && mChangeColorWhenSelect) {
-            autofitTextView.setBackground(ContextCompat.getDrawable(mContext, mSelectedBackground));
-            autofitTextView.setTextColor(ContextCompat.getColor(mContext, mSelectedTextColor));
+    /**
+     * An option whose text is already prepared off the main thread.
+     *
+     * @param autofitTextView The view of the option, null if it will be bound later by {@link #bindView(AutofitTextView)}.
+     * @param preparedText    The string from optionGetStringCallback, or its {@link PrecomputedTextCompat}.
+     */
+    Option(OptionStyleCache optionStyleCache, T filterId, @Nullable AutofitTextView autofitTextView, int resultCount, OptionGetStringCallback<T> optionGetStringCallback, CharSequence preparedText) {
+        this.mOptionStyleCache = optionStyleCache;
+        this.filterId = filterId;
+        this.autofitTextView = autofitTextView;
+        this.resultCount = resultCount;
+        this.mOptionGetStringCallback = optionGetStringCallback;
+
+        mAppliedText = preparedText.toString();
+        mAppliedCount = resultCount;
+        mAppliedTextGeneration = mOptionStyleCache.getTextGeneration();
+        if (autofitTextView == null) {
+            // Nothing to show it yet.
+        } else if (preparedText instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(autofitTextView, (PrecomputedTextCompat) preparedText);
+            } catch (IllegalArgumentException e) {
+                // The view's text params changed after it's precomputed, just use the string.
+                autofitTextView.setText(mAppliedText);
+            }
         } else {
-            autofitTextView.setBackground(ContextCompat.getDrawable(mContext, mUnSelectedBackground));
-            autofitTextView.setTextColor(ContextCompat.getColor(mContext, mUnSelectedTextColor));
+            autofitTextView.setText(mAppliedText);
         }
-        setResultCount(resultCount);
-        autofitTextView.invalidate();
+        applyState(STATE_UNSELECTED);
+    }
+
+    /**
+     * @return true if the view is changed.
+     */
+    public boolean invalidate(boolean isSelected) {
+        boolean isChanged;
+        if (isSelected && mOptionStyleCache.getConfig().isChangeColorWhenSelect()) {
+            isChanged = applyState(STATE_SELECTED);
+        } else {
+            isChanged = applyState(STATE_UNSELECTED);
+        }
+        isChanged |= refreshText();
+        if (isChanged && autofitTextView != null) {
+            autofitTextView.invalidate();
+        }
+        return isChanged;
     }
 
     public void setSelected() {
-        autofitTextView.setBackground(ContextCompat.getDrawable(mContext, mSelectedBackground));
-        autofitTextView.setTextColor(ContextCompat.getColor(mContext, mSelectedTextColor));
+        applyState(STATE_SELECTED);
     }
 
     public void setUnSelected() {
-        autofitTextView.setBackground(ContextCompat.getDrawable(mContext, mUnSelectedBackground));
-        autofitTextView.setTextColor(ContextCompat.getColor(mContext, mUnSelectedTextColor));
+        applyState(STATE_UNSELECTED);
+    }
+
+    /**
+     * Flip the view to the state. Background and text color are only set again when the style changed,
+     * they are state lists so changing state doesn't need a new background.
+     *
+     * @return true if the view is changed.
+     */
+    private boolean applyState(int state) {
+        mState = state;
+        if (autofitTextView == null) {
+            return false;
+        }
+
+        int styleGeneration = mOptionStyleCache.getGeneration();
+        if (mAppliedState == state && mAppliedStyleGeneration == styleGeneration) {
+            return false;
+        }
+        if (mAppliedState == STATE_UNKNOWN || mAppliedStyleGeneration != styleGeneration) {
+            autofitTextView.setBackground(mOptionStyleCache.newBackground());
+            autofitTextView.setTextColor(mOptionStyleCache.getTextColors());
+            mAppliedStyleGeneration = styleGeneration;
+        }
+        autofitTextView.setSelected(state == STATE_SELECTED);
+        mAppliedState = state;
+        return true;
+    }
+
+    /**
+     * Only ask for the text when count changed or {@link FlexibleFilter#refreshOptionTexts()} called,
+     * and only set it when it's different, setting text makes the view autofit again.
+     *
+     * @return true if the text is changed.
+     */
+    private boolean refreshText() {
+        if (mAppliedCount == resultCount && mAppliedTextGeneration == mOptionStyleCache.getTextGeneration()) {
+            return false;
+        }
+        String text = getString();
+        mAppliedCount = resultCount;
+        mAppliedTextGeneration = mOptionStyleCache.getTextGeneration();
+        if (text.equals(mAppliedText)) {
+            return false;
+        }
+        mAppliedText = text;
+        mIsTextChanged = true;
+        if (autofitTextView != null) {
+            autofitTextView.setText(text);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the text changed since the last call.
+     */
+    boolean consumeTextChanged() {
+        boolean isTextChanged = mIsTextChanged;
+        mIsTextChanged = false;
+        return isTextChanged;
+    }
+
+    /**
+     * Show this option with a recycled view, everything is applied to the view again.
+     */
+    void bindView(AutofitTextView autofitTextView) {
+        this.autofitTextView = autofitTextView;
+        mAppliedState = STATE_UNKNOWN;
+
+        refreshText();
+        autofitTextView.setText(mAppliedText);
+        autofitTextView.setVisibility(isShown() ? View.VISIBLE : View.GONE);
+        applyState(mState);
+    }
+
+    /**
+     * The view is given to another option, stop touching it.
+     */
+    void unbindView(AutofitTextView autofitTextView) {
+        if (this.autofitTextView == autofitTextView) {
+            this.autofitTextView = null;
+        }
+    }
+
+    /**
+     * Set the size of the view, for views bound later.
+     */
+    void setLayout(int width, int leftMargin, int rightMargin, int upDownMargin) {
+        this.mWidth = width;
+        this.mLeftMargin = leftMargin;
+        this.mRightMargin = rightMargin;
+        this.mUpDownMargin = upDownMargin;
+    }
+
+    int getWidth() {
+        return mWidth;
+    }
+
+    int getLeftMargin() {
+        return mLeftMargin;
+    }
+
+    int getRightMargin() {
+        return mRightMargin;
+    }
+
+    int getUpDownMargin() {
+        return mUpDownMargin;
     }
 
+    /**
+     * @return The view of this option, null if it's not showing in {@link FlexibleFilter.ContainerMode#RECYCLED} mode.
+     */
+    @Nullable
     public AutofitTextView getAutofitTextView() {
         return autofitTextView;
     }
 
+    boolean isVisible() {
+        return mIsVisible;
+    }
+
+    /**
+     * @return true if the visibility changed.
+     */
+    boolean setVisible(boolean visible) {
+        boolean isChanged = mIsVisible != visible;
+        mIsVisible = visible;
+        if (autofitTextView != null) {
+            autofitTextView.setVisibility(isShown() ? View.VISIBLE : View.GONE);
+        }
+        return isChanged;
+    }
+
+    boolean isDeferred() {
+        return mIsDeferred;
+    }
+
+    /**
+     * Hide the view until it's revealed, whether the option should be visible is kept.
+     */
+    void setDeferred(boolean deferred) {
+        mIsDeferred = deferred;
+        if (autofitTextView != null) {
+            autofitTextView.setVisibility(isShown() ? View.VISIBLE : View.GONE);
+        }
+    }
+
+    /**
+     * @return true if the view of the option is shown now.
+     */
+    boolean isShown() {
+        return mIsVisible && !mIsDeferred;
+    }
+
     public String getString() {
         return mOptionGetStringCallback.getString(filterId, resultCount);
     }
@@ -67,6 +304,8 @@ public class Option<T> {
 
     public void setFilterId(T filterId) {
         this.filterId = filterId;
+        // Text may depend on filterId, get it again next time.
+        mAppliedTextGeneration = mOptionStyleCache.getTextGeneration() - 1;
     }
 
 
@@ -75,9 +314,18 @@ public class Option<T> {
     }
 
     public void setResultCount(int resultCount) {
+        setResultCount(resultCount, true);
+    }
+
+    /**
+     * @param refreshText false to only keep the count, the text will be refreshed on next {@link #invalidate(boolean)}.
+     */
+    void setResultCount(int resultCount, boolean refreshText) {
         this.resultCount = resultCount;
 
-        autofitTextView.setText(getString());
+        if (refreshText) {
+            refreshText();
+        }
     }
 }
-//endregion
\ No newline at end of file
+//endregion
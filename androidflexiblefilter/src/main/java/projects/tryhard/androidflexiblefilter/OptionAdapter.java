@@ -0,0 +1,120 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.google.android.flexbox.FlexboxLayoutManager;
+
+import java.util.List;
+
+/**
+ * Show options of a {@link FilterHolder} with recycled views, only options on screen have a view.
+ * Hidden options are left out, so the list only changes when the visibility of some option changed.
+ */
+final class OptionAdapter<T> extends RecyclerView.Adapter<OptionAdapter.OptionViewHolder> {
+    /**
+     * Create an empty view for options, it's styled and filled when an option is bound to it.
+     */
+    interface OptionViewFactory {
+        AutofitTextView newOptionView();
+    }
+
+    private final FilterHolder<T> mFilterHolder;
+    private final OptionViewFactory mOptionViewFactory;
+    /**
+     * Positions in options of the filter holder, for every visible option.
+     */
+    private int[] mVisiblePositions = new int[0];
+    private int mVisibleCount = 0;
+
+    OptionAdapter(FilterHolder<T> filterHolder, OptionViewFactory optionViewFactory) {
+        this.mFilterHolder = filterHolder;
+        this.mOptionViewFactory = optionViewFactory;
+    }
+
+    /**
+     * Check which options are visible now, and only notify when it's changed. Texts and states of the options
+     * already go to their bound views.
+     *
+     * @return true if the visible options changed.
+     */
+    boolean refresh() {
+        List<Option<T>> options = mFilterHolder.getOptions();
+        int[] visiblePositions = mVisiblePositions.length >= options.size() ? mVisiblePositions : new int[options.size()];
+        boolean isChanged = visiblePositions != mVisiblePositions;
+
+        int visibleCount = 0;
+        for (int i = 0; i < options.size(); i++) {
+            if (options.get(i).isVisible()) {
+                if (!isChanged && (visibleCount >= mVisibleCount || visiblePositions[visibleCount] != i)) {
+                    isChanged = true;
+                }
+                visiblePositions[visibleCount++] = i;
+            }
+        }
+        isChanged |= visibleCount != mVisibleCount;
+        if (!isChanged) return false;
+
+        mVisiblePositions = visiblePositions;
+        mVisibleCount = visibleCount;
+        notifyDataSetChanged();
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public OptionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        return new OptionViewHolder(mOptionViewFactory.newOptionView());
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull OptionViewHolder holder, int position) {
+        final Option<T> option = mFilterHolder.getOptions().get(mVisiblePositions[position]);
+        holder.bind(option);
+
+        FlexboxLayoutManager.LayoutParams lp = new FlexboxLayoutManager.LayoutParams(option.getWidth(), ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(option.getLeftMargin(), option.getUpDownMargin(), option.getRightMargin(), option.getUpDownMargin());
+        holder.itemView.setLayoutParams(lp);
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mFilterHolder.onOptionViewClicked(option);
+            }
+        });
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull OptionViewHolder holder) {
+        holder.unbind();
+    }
+
+    @Override
+    public int getItemCount() {
+        return mVisibleCount;
+    }
+
+    static class OptionViewHolder extends RecyclerView.ViewHolder {
+        private Option<?> mOption;
+
+        OptionViewHolder(AutofitTextView autofitTextView) {
+            super(autofitTextView);
+        }
+
+        void bind(Option<?> option) {
+            if (mOption != null && mOption != option) {
+                mOption.unbindView((AutofitTextView) itemView);
+            }
+            mOption = option;
+            option.bindView((AutofitTextView) itemView);
+        }
+
+        void unbind() {
+            if (mOption != null) {
+                mOption.unbindView((AutofitTextView) itemView);
+                mOption = null;
+            }
+        }
+    }
+}
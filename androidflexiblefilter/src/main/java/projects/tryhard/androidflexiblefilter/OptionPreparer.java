@@ -0,0 +1,136 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.os.Build;
+import android.os.Handler;
+import android.text.TextPaint;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v4.text.PrecomputedTextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepare texts of options on a background thread: get the strings, precompute their layout and solve their
+ * autofit text size, then hand them back on the main thread.
+ */
+final class OptionPreparer {
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private static ThreadPoolExecutor sExecutor;
+
+    /**
+     * Get called on the main thread when all options are prepared.
+     */
+    interface Callback<S> {
+        void prepared(List<PreparedOption<S>> preparedOptions);
+    }
+
+    /**
+     * An option with its text ready to be shown.
+     */
+    static final class PreparedOption<S> {
+        final OptionSpec<S> mOptionSpec;
+        /**
+         * The string from {@link FlexibleFilter.OptionGetStringCallback}, or its {@link PrecomputedTextCompat}.
+         */
+        final CharSequence mText;
+        /**
+         * The autofit text size in pixels the text is prepared in, {@link AutofitHelper.Prefetcher#NOT_FITTED} to keep
+         * the size of the view.
+         */
+        final float mTextSize;
+
+        PreparedOption(OptionSpec<S> optionSpec, CharSequence text, float textSize) {
+            this.mOptionSpec = optionSpec;
+            this.mText = text;
+            this.mTextSize = textSize;
+        }
+    }
+
+    private OptionPreparer() {
+    }
+
+    /**
+     * @param optionSpecs  Options to prepare.
+     * @param targetWidths Width for text of every option, used to solve the autofit text size.
+     * @param params       Params of the option views at their own text size, null to not precompute text.
+     *                     Text shrunk by autofit is precomputed at its autofit size.
+     * @param prefetcher   Solve autofit text sizes for option views.
+     * @param callback     Get all the prepared options on the main thread.
+     */
+    static <S> void prepare(final List<OptionSpec<S>> optionSpecs, final int[] targetWidths,
+                            @Nullable final PrecomputedTextCompat.Params params,
+                            final AutofitHelper.Prefetcher prefetcher, final Callback<S> callback) {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<PreparedOption<S>> preparedOptions = new ArrayList<>(optionSpecs.size());
+                // Many labels shrink to the same size, they share params.
+                PrecomputedTextCompat.Params sizedParams = params;
+                for (int i = 0; i < optionSpecs.size(); i++) {
+                    OptionSpec<S> optionSpec = optionSpecs.get(i);
+                    String label = optionSpec.getOptionGetStringCallback().getString(optionSpec.getFilterId(), optionSpec.getCount());
+                    float textSize = prefetcher.prefetch(label, targetWidths[i]);
+
+                    CharSequence text = label;
+                    if (params != null) {
+                        float paramsTextSize = textSize == AutofitHelper.Prefetcher.NOT_FITTED
+                                ? params.getTextPaint().getTextSize() : textSize;
+                        if (sizedParams.getTextPaint().getTextSize() != paramsTextSize) {
+                            sizedParams = withTextSize(params, paramsTextSize);
+                        }
+                        text = PrecomputedTextCompat.create(label, sizedParams);
+                    }
+                    preparedOptions.add(new PreparedOption<>(optionSpec, text, textSize));
+                }
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.prepared(preparedOptions);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return Params laying text out like the ones given, but in another text size.
+     */
+    private static PrecomputedTextCompat.Params withTextSize(PrecomputedTextCompat.Params params, float textSize) {
+        TextPaint paint = new TextPaint(params.getTextPaint());
+        paint.setTextSize(textSize);
+        PrecomputedTextCompat.Params.Builder builder = new PrecomputedTextCompat.Params.Builder(paint)
+                .setTextDirection(params.getTextDirection());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            builder.setBreakStrategy(params.getBreakStrategy())
+                    .setHyphenationFrequency(params.getHyphenationFrequency());
+        }
+        return builder.build();
+    }
+
+    /**
+     * One thread shared by every filter, it's only alive while there is work.
+     */
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "FlexibleFilter-OptionPreparer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            sExecutor.allowCoreThreadTimeOut(true);
+        }
+        return sExecutor;
+    }
+}
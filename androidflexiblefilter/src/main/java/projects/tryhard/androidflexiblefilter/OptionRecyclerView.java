@@ -0,0 +1,37 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.content.Context;
+import android.support.v7.widget.RecyclerView;
+
+import com.google.android.flexbox.FlexDirection;
+import com.google.android.flexbox.FlexWrap;
+import com.google.android.flexbox.FlexboxLayoutManager;
+import com.google.android.flexbox.JustifyContent;
+
+/**
+ * Holds options in {@link FlexibleFilter.ContainerMode#RECYCLED} mode. The filter sits in a scroll view which
+ * gives us unlimited height, so the height is capped here, otherwise every option would be laid out at once.
+ */
+class OptionRecyclerView extends RecyclerView {
+    private int mMaxHeight;
+
+    OptionRecyclerView(Context context, int maxHeight) {
+        super(context);
+        this.mMaxHeight = maxHeight;
+
+        FlexboxLayoutManager layoutManager = new FlexboxLayoutManager(context, FlexDirection.ROW, FlexWrap.WRAP);
+        layoutManager.setJustifyContent(JustifyContent.FLEX_START);
+        setLayoutManager(layoutManager);
+        setHasFixedSize(false);
+    }
+
+    @Override
+    protected void onMeasure(int widthSpec, int heightSpec) {
+        int mode = MeasureSpec.getMode(heightSpec);
+        int size = MeasureSpec.getSize(heightSpec);
+        if (mode == MeasureSpec.UNSPECIFIED || size > mMaxHeight) {
+            heightSpec = MeasureSpec.makeMeasureSpec(mMaxHeight, MeasureSpec.AT_MOST);
+        }
+        super.onMeasure(widthSpec, heightSpec);
+    }
+}
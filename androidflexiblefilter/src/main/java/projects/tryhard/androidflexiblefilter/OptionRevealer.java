@@ -0,0 +1,127 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.Nullable;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import projects.tryhard.androidflexiblefilter.FlexibleFilter.ProgressiveOpenListener;
+
+/**
+ * Show options hidden by {@link FilterHolder#deferOptionsAfterFirstScreen(int, int)} a few at a time, once every frame.
+ * Options are shown until the time budget of the frame runs out, and fewer of them are shown in the next frame
+ * when the last one took too long, since laying them out comes after.
+ */
+final class OptionRevealer {
+    /**
+     * Time we take in a frame to show options.
+     */
+    static final long FRAME_BUDGET_NANOS = 4_000_000L;
+    /**
+     * A frame longer than this means we showed too many options in the last one.
+     */
+    private static final long SLOW_FRAME_NANOS = 24_000_000L;
+    private static final int MIN_CHUNK_SIZE = 1;
+    private static final int MAX_CHUNK_SIZE = 64;
+
+    private final List<Reveal> mReveals = new ArrayList<>();
+    @Nullable
+    private ProgressiveOpenListener mProgressiveOpenListener;
+    private int mChunkSize = 8;
+    private long mLastFrameTimeNanos = 0;
+    private boolean mIsScheduled = false;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mIsScheduled = false;
+            revealChunk(frameTimeNanos);
+        }
+    };
+
+    void setProgressiveOpenListener(@Nullable ProgressiveOpenListener progressiveOpenListener) {
+        this.mProgressiveOpenListener = progressiveOpenListener;
+    }
+
+    /**
+     * Start showing the hidden options of the filter from the next frame.
+     */
+    void start(FilterHolder<?> filterHolder, int deferredCount) {
+        cancel(filterHolder);
+        mReveals.add(new Reveal(filterHolder, deferredCount));
+        if (mReveals.size() == 1) {
+            mLastFrameTimeNanos = 0;
+        }
+        schedule();
+    }
+
+    /**
+     * Stop showing options of the filter, the ones still hidden stay hidden.
+     */
+    void cancel(FilterHolder<?> filterHolder) {
+        for (int i = mReveals.size() - 1; i >= 0; i--) {
+            if (mReveals.get(i).mFilterHolder == filterHolder) {
+                mReveals.remove(i);
+            }
+        }
+    }
+
+    private void schedule() {
+        if (mIsScheduled || mReveals.isEmpty()) return;
+        mIsScheduled = true;
+        Choreographer.getInstance().postFrameCallback(mFrameCallback);
+    }
+
+    private void revealChunk(long frameTimeNanos) {
+        if (mLastFrameTimeNanos != 0) {
+            if (frameTimeNanos - mLastFrameTimeNanos > SLOW_FRAME_NANOS) {
+                mChunkSize = Math.max(MIN_CHUNK_SIZE, mChunkSize / 2);
+            } else {
+                mChunkSize = Math.min(MAX_CHUNK_SIZE, mChunkSize * 2);
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+
+        long startNanos = System.nanoTime();
+        int revealedCount = 0;
+        while (!mReveals.isEmpty() && revealedCount < mChunkSize) {
+            Reveal reveal = mReveals.get(0);
+            boolean hasMore = reveal.mFilterHolder.revealNextOption();
+            if (hasMore) {
+                reveal.mRevealedCount++;
+                revealedCount++;
+            }
+            if (!hasMore || reveal.mRevealedCount >= reveal.mTotalCount) {
+                // Some may be gone by being hidden, it's still done.
+                reveal.mRevealedCount = reveal.mTotalCount;
+                mReveals.remove(0);
+                notifyProgress(reveal);
+            }
+            if (System.nanoTime() - startNanos > FRAME_BUDGET_NANOS) {
+                break;
+            }
+        }
+        if (!mReveals.isEmpty()) {
+            notifyProgress(mReveals.get(0));
+        }
+        schedule();
+    }
+
+    private void notifyProgress(Reveal reveal) {
+        if (mProgressiveOpenListener != null) {
+            mProgressiveOpenListener.optionsRevealed(reveal.mFilterHolder.getFilterNum(), reveal.mRevealedCount, reveal.mTotalCount);
+        }
+    }
+
+    private static final class Reveal {
+        private final FilterHolder<?> mFilterHolder;
+        private final int mTotalCount;
+        private int mRevealedCount = 0;
+
+        Reveal(FilterHolder<?> filterHolder, int totalCount) {
+            this.mFilterHolder = filterHolder;
+            this.mTotalCount = totalCount;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package projects.tryhard.androidflexiblefilter;
+
+import projects.tryhard.androidflexiblefilter.FlexibleFilter.OptionGetStringCallback;
+
+/**
+ * Describe an option to add, used when adding many options at once.
+ *
+ * @param <S> Type of the option's unique ID.
+ */
+public class OptionSpec<S> {
+    /**
+     * Use the default margins, the same as {@link FlexibleFilter#addFilterOption(int, Object, int, int, OptionGetStringCallback)}.
+     */
+    public static final int DEFAULT_MARGIN = -1;
+
+    private S mFilterId;
+    private int mCount;
+    private int mWidth;
+    private int mLeftMargin;
+    private int mRightMargin;
+    private int mUpDownMargin;
+    private OptionGetStringCallback<S> mOptionGetStringCallback;
+
+    /**
+     * An option with default margins.
+     *
+     * @param filterId                The unique ID you give to the option.
+     * @param count                   The count of this option from the beginning.
+     * @param width                   The width of this option.
+     * @param optionGetStringCallback For you to decide the text on the option.
+     */
+    public OptionSpec(S filterId, int count, int width, OptionGetStringCallback<S> optionGetStringCallback) {
+        this(filterId, count, width, DEFAULT_MARGIN, DEFAULT_MARGIN, DEFAULT_MARGIN, optionGetStringCallback);
+    }
+
+    /**
+     * @param filterId                The unique ID you give to the option.
+     * @param count                   The count of this option from the beginning.
+     * @param width                   The width of this option.
+     * @param leftMargin              The margin to the left.
+     * @param rightMargin             The margin to the right.
+     * @param upDownMargin            The margin to the up and down.
+     * @param optionGetStringCallback For you to decide the text on the option.
+     */
+    public OptionSpec(S filterId, int count, int width, int leftMargin, int rightMargin, int upDownMargin,
+                      OptionGetStringCallback<S> optionGetStringCallback) {
+        this.mFilterId = filterId;
+        this.mCount = count;
+        this.mWidth = width;
+        this.mLeftMargin = leftMargin;
+        this.mRightMargin = rightMargin;
+        this.mUpDownMargin = upDownMargin;
+        this.mOptionGetStringCallback = optionGetStringCallback;
+    }
+
+    public S getFilterId() {
+        return mFilterId;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getLeftMargin() {
+        return mLeftMargin;
+    }
+
+    public int getRightMargin() {
+        return mRightMargin;
+    }
+
+    public int getUpDownMargin() {
+        return mUpDownMargin;
+    }
+
+    public OptionGetStringCallback<S> getOptionGetStringCallback() {
+        return mOptionGetStringCallback;
+    }
+}
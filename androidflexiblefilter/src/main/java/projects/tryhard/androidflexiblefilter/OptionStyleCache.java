@@ -0,0 +1,121 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.StateListDrawable;
+import android.support.annotation.DrawableRes;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * Resolve the selected and unselected style of options once for a filter.
+ * Options get a state list background and text colors, so selecting an option is just {@link android.view.View#setSelected(boolean)}.
+ * It also holds the {@link FilterConfig} of the filter, which is shared by all of its holders and options.
+ */
+class OptionStyleCache {
+    private static final int[] STATE_SELECTED = new int[]{android.R.attr.state_selected};
+    private static final int[] STATE_DEFAULT = new int[]{};
+
+    private Context mContext;
+    private FilterConfig mConfig;
+
+    /**
+     * Get bumped every time the style of options changed, so options know they need to redraw.
+     */
+    private int mGeneration = 0;
+    /**
+     * Get bumped by {@link #refreshTexts()}, so options know they need to get their text again even count didn't change.
+     */
+    private int mTextGeneration = 0;
+    /**
+     * The generation we resolved things with, -1 means never resolved.
+     */
+    private int mResolvedGeneration = -1;
+    private Drawable.ConstantState mSelectedBackgroundState;
+    private Drawable.ConstantState mUnSelectedBackgroundState;
+    private ColorStateList mTextColors;
+
+    OptionStyleCache(Context context, FilterConfig config) {
+        this.mContext = context;
+        this.mConfig = config;
+    }
+
+    FilterConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * Options are styled again only if colors or backgrounds changed.
+     */
+    void setConfig(FilterConfig config) {
+        if (!config.hasSameStyle(mConfig)) {
+            mGeneration++;
+        }
+        mConfig = config;
+    }
+
+    /**
+     * @return The generation of the style we are giving out now.
+     */
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    int getTextGeneration() {
+        return mTextGeneration;
+    }
+
+    /**
+     * Make every option get its text again when it's updated next time.
+     */
+    void refreshTexts() {
+        mTextGeneration++;
+    }
+
+    /**
+     * @return A new background for one option, the drawables share their state with every other option.
+     */
+    Drawable newBackground() {
+        ensureResolved();
+        StateListDrawable background = new StateListDrawable();
+        background.addState(STATE_SELECTED, newDrawable(mSelectedBackgroundState, mConfig.getSelectedBackground()));
+        background.addState(STATE_DEFAULT, newDrawable(mUnSelectedBackgroundState, mConfig.getUnSelectedBackground()));
+        return background;
+    }
+
+    /**
+     * @return Text colors for both states, can be shared by every option.
+     */
+    ColorStateList getTextColors() {
+        ensureResolved();
+        return mTextColors;
+    }
+
+    private void ensureResolved() {
+        if (mResolvedGeneration == mGeneration) return;
+
+        mSelectedBackgroundState = getConstantState(mConfig.getSelectedBackground());
+        mUnSelectedBackgroundState = getConstantState(mConfig.getUnSelectedBackground());
+        mTextColors = new ColorStateList(
+                new int[][]{STATE_SELECTED, STATE_DEFAULT},
+                new int[]{ContextCompat.getColor(mContext, mConfig.getSelectedTextColor()),
+                        ContextCompat.getColor(mContext, mConfig.getUnSelectedTextColor())});
+        mResolvedGeneration = mGeneration;
+    }
+
+    private Drawable.ConstantState getConstantState(@DrawableRes int drawableRes) {
+        Drawable drawable = ContextCompat.getDrawable(mContext, drawableRes);
+        if (drawable == null) {
+            return null;
+        }
+        return drawable.getConstantState();
+    }
+
+    private Drawable newDrawable(Drawable.ConstantState constantState, @DrawableRes int drawableRes) {
+        if (constantState == null) {
+            // Some drawables can't be shared, just load a new one.
+            return ContextCompat.getDrawable(mContext, drawableRes);
+        }
+        return constantState.newDrawable(mContext.getResources());
+    }
+}
@@ -0,0 +1,70 @@
+package projects.tryhard.androidflexiblefilter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What a {@link FlexibleFilter.QueryEvaluator} found for a {@link SelectionSnapshot}: your result and new counts
+ * of options. Filled on the worker thread, and given to you on the main thread after the counts are shown.
+ *
+ * @param <R> Class of your result.
+ */
+public final class QueryResult<R> {
+    private final SelectionSnapshot mSelections;
+    private volatile boolean mIsCancelled = false;
+    private R mResult;
+    private Map<Integer, Map<Object, Integer>> mCounts = new LinkedHashMap<>();
+
+    QueryResult(SelectionSnapshot selections) {
+        this.mSelections = selections;
+    }
+
+    public SelectionSnapshot getSelections() {
+        return mSelections;
+    }
+
+    /**
+     * Selection changed again after this query started, nobody will get this result.
+     * Check it while evaluating and stop early.
+     */
+    public boolean isCancelled() {
+        return mIsCancelled;
+    }
+
+    void cancel() {
+        mIsCancelled = true;
+    }
+
+    public R getResult() {
+        return mResult;
+    }
+
+    public void setResult(R result) {
+        this.mResult = result;
+    }
+
+    /**
+     * Set the new count of an option, it's shown when the result is delivered.
+     *
+     * @param filterNum The filter of the option.
+     * @param filterId  The unique ID of the option.
+     * @param count     New count.
+     */
+    public <S> void setCount(int filterNum, S filterId, int count) {
+        Map<Object, Integer> counts = mCounts.get(filterNum);
+        if (counts == null) {
+            counts = new HashMap<>();
+            mCounts.put(filterNum, counts);
+        }
+        counts.put(filterId, count);
+    }
+
+    /**
+     * @return New counts of options by filterNum, then by filterId.
+     */
+    public Map<Integer, Map<Object, Integer>> getCounts() {
+        return Collections.unmodifiableMap(mCounts);
+    }
+}
@@ -0,0 +1,133 @@
+package projects.tryhard.androidflexiblefilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Split numbers into buckets by sorted edges, bucket i is from edge i (included) to edge i + 1 (not included),
+ * the last bucket also has its end. Finding the bucket of a number is a binary search of the edges.
+ * Use the ranges from {@link #getRanges()} as filterIds of the options of a range facet, see
+ * {@link FacetEngine#addRangeFacet(int, RangeBuckets, FacetEngine.ValueExtractor)}.
+ */
+public final class RangeBuckets {
+    private final double[] mEdges;
+    private final List<NumericRange> mRanges;
+
+    private RangeBuckets(double[] edges) {
+        this.mEdges = edges;
+        List<NumericRange> ranges = new ArrayList<>(edges.length - 1);
+        for (int i = 0; i < edges.length - 1; i++) {
+            ranges.add(new NumericRange(edges[i], edges[i + 1]));
+        }
+        this.mRanges = Collections.unmodifiableList(ranges);
+    }
+
+    /**
+     * Buckets between the edges you give, use infinity for a bucket without start or end.
+     *
+     * @param edges At least two edges, ascending.
+     */
+    public static RangeBuckets ofEdges(double... edges) {
+        if (edges.length < 2) {
+            throw new IllegalArgumentException("Need at least two edges");
+        }
+        for (int i = 0; i < edges.length; i++) {
+            if (Double.isNaN(edges[i]) || (i > 0 && edges[i] <= edges[i - 1])) {
+                throw new IllegalArgumentException("Edges should be ascending: " + Arrays.toString(edges));
+            }
+        }
+        return new RangeBuckets(edges.clone());
+    }
+
+    /**
+     * Buckets of the same width from min to max.
+     */
+    public static RangeBuckets equalWidth(double min, double max, int bucketCount) {
+        if (bucketCount < 1 || !(min < max)) {
+            throw new IllegalArgumentException("Need min < max and at least one bucket");
+        }
+        double[] edges = new double[bucketCount + 1];
+        for (int i = 0; i < bucketCount; i++) {
+            edges[i] = min + (max - min) * i / bucketCount;
+        }
+        edges[bucketCount] = max;
+        return new RangeBuckets(edges);
+    }
+
+    /**
+     * Buckets with about the same number of values in each. Repeated values can't be split, so there may be fewer
+     * buckets than asked.
+     *
+     * @param values Values of your items, NaN is skipped.
+     */
+    public static RangeBuckets quantile(double[] values, int bucketCount) {
+        if (bucketCount < 1) {
+            throw new IllegalArgumentException("Need at least one bucket");
+        }
+        double[] sorted = new double[values.length];
+        int size = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                sorted[size++] = value;
+            }
+        }
+        if (size == 0) {
+            throw new IllegalArgumentException("Need at least one value");
+        }
+        sorted = Arrays.copyOf(sorted, size);
+        Arrays.sort(sorted);
+
+        double[] edges = new double[bucketCount + 1];
+        int edgeCount = 0;
+        for (int i = 0; i <= bucketCount; i++) {
+            double edge = i == bucketCount ? sorted[size - 1] : sorted[(int) ((long) i * size / bucketCount)];
+            if (edgeCount == 0 || edge > edges[edgeCount - 1]) {
+                edges[edgeCount++] = edge;
+            }
+        }
+        if (edgeCount == 1) {
+            // Every value is the same.
+            edges[edgeCount++] = Math.nextUp(edges[0]);
+        }
+        return new RangeBuckets(Arrays.copyOf(edges, edgeCount));
+    }
+
+    public int getBucketCount() {
+        return mRanges.size();
+    }
+
+    /**
+     * @return Range of every bucket, in ascending order.
+     */
+    public List<NumericRange> getRanges() {
+        return mRanges;
+    }
+
+    /**
+     * @return The bucket of the value, -1 if it's NaN or out of all the buckets.
+     */
+    int getBucket(double value) {
+        int last = mEdges.length - 1;
+        if (Double.isNaN(value) || value < mEdges[0] || value > mEdges[last]) {
+            return -1;
+        }
+        if (value == mEdges[last]) {
+            return last - 1;
+        }
+        int index = Arrays.binarySearch(mEdges, value);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * @return The bucket of the range, -1 if it's not one of {@link #getRanges()}.
+     */
+    int getBucket(NumericRange range) {
+        int index = Arrays.binarySearch(mEdges, range.getFrom());
+        if (index < 0 || index == mEdges.length - 1 || mEdges[index + 1] != range.getTo()) {
+            return -1;
+        }
+        return index;
+    }
+}
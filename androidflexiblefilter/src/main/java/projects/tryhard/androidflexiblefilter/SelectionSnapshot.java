@@ -0,0 +1,65 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The selected options of every filter at one moment, it doesn't change after it's taken so it's safe to read on
+ * any thread.
+ */
+public final class SelectionSnapshot {
+    private final Map<Integer, List<Object>> mSelections;
+
+    SelectionSnapshot(Map<Integer, List<Object>> selections) {
+        Map<Integer, List<Object>> copy = new LinkedHashMap<>();
+        for (Map.Entry<Integer, List<Object>> entry : selections.entrySet()) {
+            copy.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+        }
+        this.mSelections = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * @param filterNum The filter number.
+     * @return The filterId of the selected option, the first one in multi-select mode.
+     * null if nothing is selected or there is no such filter.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public <S> S getSelected(int filterNum) {
+        List<Object> selected = mSelections.get(filterNum);
+        if (selected == null || selected.isEmpty()) {
+            return null;
+        }
+        return (S) selected.get(0);
+    }
+
+    /**
+     * @param filterNum The filter number.
+     * @return filterIds of all the selected options, empty if nothing is selected or there is no such filter.
+     */
+    @SuppressWarnings("unchecked")
+    public <S> List<S> getAllSelected(int filterNum) {
+        List<Object> selected = mSelections.get(filterNum);
+        if (selected == null) {
+            return Collections.emptyList();
+        }
+        return (List<S>) selected;
+    }
+
+    public boolean hasSelection(int filterNum) {
+        List<Object> selected = mSelections.get(filterNum);
+        return selected != null && !selected.isEmpty();
+    }
+
+    /**
+     * @return Numbers of all the filters, in the order they are added.
+     */
+    public Set<Integer> getFilterNums() {
+        return mSelections.keySet();
+    }
+}
@@ -0,0 +1,110 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check adding many options at once takes the height and updates every filter only once.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AddFilterOptionsTest {
+    private static final int OPTION_COUNT = 50;
+
+    private FlexibleFilter<String> mFilter;
+    private CountingMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        mFilter.addFilter(1, "ALL", -1);
+        // Heights of the empty filters are taken first.
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        mMetrics = new CountingMetrics();
+        mFilter.setFilterMetrics(mMetrics);
+    }
+
+    @Test
+    public void addFilterOptions_takesHeightAndUpdatesOnce() {
+        mFilter.addFilterOptions(0, newOptionSpecs());
+
+        assertEquals(OPTION_COUNT + 1, mFilter.getFilter(0, String.class).getOptions().size());
+        assertEquals(Collections.singletonList(0), mMetrics.mUpdatedFilters);
+
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        assertEquals(Collections.singletonList(1), mMetrics.mHeightsTakenFilterCounts);
+    }
+
+    @Test
+    public void addFilterOptions_inABatchUpdatesEveryFilterOnce() {
+        mFilter.batch(new Runnable() {
+            @Override
+            public void run() {
+                mFilter.addFilterOptions(0, newOptionSpecs());
+                mFilter.addFilterOptions(1, newOptionSpecs());
+                mFilter.addFilterOptions(0, newOptionSpecs());
+            }
+        });
+
+        assertEquals(Arrays.asList(0, 1), mMetrics.mUpdatedFilters);
+
+        // Both filters are taken in the same pre-draw.
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        assertEquals(Collections.singletonList(2), mMetrics.mHeightsTakenFilterCounts);
+    }
+
+    private static List<OptionSpec<String>> newOptionSpecs() {
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            optionSpecs.add(new OptionSpec<>("Option" + i, i, 300, TestFilters.STRING_CALLBACK));
+        }
+        return optionSpecs;
+    }
+
+    /**
+     * Only keeps what is counted by this test.
+     */
+    private static final class CountingMetrics implements FilterMetrics {
+        private final List<Integer> mUpdatedFilters = new ArrayList<>();
+        private final List<Integer> mHeightsTakenFilterCounts = new ArrayList<>();
+
+        @Override
+        public void filterUpdated(int filterNum, long durationNanos, int optionCount, int touchedOptionCount) {
+            mUpdatedFilters.add(filterNum);
+        }
+
+        @Override
+        public void allFiltersUpdated(long durationNanos, int filterCount) {
+
+        }
+
+        @Override
+        public void heightsTaken(long durationNanos, int filterCount) {
+            mHeightsTakenFilterCounts.add(filterCount);
+        }
+
+        @Override
+        public void heightMeasured(int filterNum, long durationNanos, boolean isCacheHit) {
+
+        }
+
+        @Override
+        public void autofitSolved(long durationNanos, boolean isCacheHit) {
+
+        }
+
+        @Override
+        public void animationFrame(boolean isOpening, long frameNanos) {
+
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check options added in the background show up a few per frame, in order, and the callback fires once at the end.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AsyncAddTest {
+    private static final int OPTION_COUNT = 20;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private HistogramFilterMetrics mMetrics;
+    private int mPreparedCallCount;
+    private int mPreparedOptionCount;
+    private int mSizeCacheMissCount;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        mFilterHolder = mFilter.getFilter(0, String.class);
+        mMetrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(mMetrics);
+        AutofitHelper.clearSizeCache();
+        mSizeCacheMissCount = AutofitHelper.getSizeCacheMissCount();
+    }
+
+    @Test
+    public void addFilterOptionsAsync_addsOneOptionEveryFrameWithNoBudget() throws InterruptedException {
+        mFilter.setPreparedOptionsFrameBudgetNanos(0);
+
+        List<Integer> addedPerFrame = addAsyncAndRunFrames();
+
+        assertEquals(OPTION_COUNT, addedPerFrame.size());
+        for (int added : addedPerFrame) {
+            assertEquals(1, added);
+        }
+        assertAllAdded();
+    }
+
+    @Test
+    public void addFilterOptionsAsync_addsEverythingInOneFrameWithinBudget() throws InterruptedException {
+        mFilter.setPreparedOptionsFrameBudgetNanos(TimeUnit.SECONDS.toNanos(60));
+
+        List<Integer> addedPerFrame = addAsyncAndRunFrames();
+
+        assertEquals(1, addedPerFrame.size());
+        assertAllAdded();
+    }
+
+    @Test
+    public void addFilterOptionsAsync_defaultBudgetAddsEveryOptionOnce() throws InterruptedException {
+        List<Integer> addedPerFrame = addAsyncAndRunFrames();
+
+        int sum = 0;
+        for (int added : addedPerFrame) {
+            assertTrue(added > 0);
+            sum += added;
+        }
+        assertEquals(OPTION_COUNT, sum);
+        assertAllAdded();
+    }
+
+    @Test
+    public void addFilterOptionsAsync_shrunkLabelGetsItsSizeBeforeLayout() throws InterruptedException {
+        StringBuilder longLabel = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longLabel.append("Long option ");
+        }
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        optionSpecs.add(new OptionSpec<>("Short", 1, 300, TestFilters.STRING_CALLBACK));
+        optionSpecs.add(new OptionSpec<>(longLabel.toString(), 1, 300, TestFilters.STRING_CALLBACK));
+        mFilter.addFilterOptionsAsync(0, optionSpecs, new FlexibleFilter.OptionsPreparedCallback() {
+            @Override
+            public void optionsPrepared(int filterNum, int optionCount) {
+                mPreparedCallCount++;
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mPreparedCallCount == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        }
+        assertEquals(1, mPreparedCallCount);
+
+        // Nothing is laid out yet, the long label is already in the size autofit would give it.
+        List<Option<String>> options = mFilterHolder.getOptions();
+        float shortTextSize = options.get(1).getAutofitTextView().getTextSize();
+        float longTextSize = options.get(2).getAutofitTextView().getTextSize();
+        assertTrue(longTextSize < shortTextSize);
+        assertEquals(longLabel + "(1)", options.get(2).getAutofitTextView().getText().toString());
+    }
+
+    /**
+     * Wait for the background thread, then run main thread tasks one at a time, so every frame is seen on its own.
+     *
+     * @return How many options every frame added.
+     */
+    private List<Integer> addAsyncAndRunFrames() throws InterruptedException {
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            optionSpecs.add(new OptionSpec<>("Option" + i, i, 300, TestFilters.STRING_CALLBACK));
+        }
+        mFilter.addFilterOptionsAsync(0, optionSpecs, new FlexibleFilter.OptionsPreparedCallback() {
+            @Override
+            public void optionsPrepared(int filterNum, int optionCount) {
+                mPreparedCallCount++;
+                mPreparedOptionCount = optionCount;
+            }
+        });
+
+        Scheduler scheduler = Robolectric.getForegroundThreadScheduler();
+        List<Integer> addedPerFrame = new ArrayList<>();
+        int optionCount = mFilterHolder.getOptions().size();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mPreparedCallCount == 0 && System.currentTimeMillis() < deadline) {
+            if (!scheduler.advanceToNextPostedRunnable()) {
+                // Still prepared on the background thread.
+                Thread.sleep(10);
+                continue;
+            }
+            int newOptionCount = mFilterHolder.getOptions().size();
+            if (newOptionCount != optionCount) {
+                addedPerFrame.add(newOptionCount - optionCount);
+                optionCount = newOptionCount;
+            }
+        }
+        // Nothing is left to come.
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        return addedPerFrame;
+    }
+
+    private void assertAllAdded() {
+        assertEquals(1, mPreparedCallCount);
+        assertEquals(OPTION_COUNT, mPreparedOptionCount);
+        assertEquals(1, mMetrics.getFilterUpdates().getCount());
+        // Every text size is solved once by the prefetcher on the background thread.
+        assertEquals(OPTION_COUNT, AutofitHelper.getSizeCacheMissCount() - mSizeCacheMissCount);
+
+        List<Option<String>> options = mFilterHolder.getOptions();
+        assertEquals(OPTION_COUNT + 1, options.size());
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            Option<String> option = options.get(i + 1);
+            assertEquals("Option" + i, option.getFilterId());
+            assertEquals("Option" + i + "(" + i + ")", option.getAutofitTextView().getText().toString());
+        }
+    }
+}
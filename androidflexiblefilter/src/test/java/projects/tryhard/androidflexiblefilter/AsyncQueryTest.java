@@ -0,0 +1,106 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check only the query of the latest selections is delivered, and its counts are shown.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AsyncQueryTest {
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private List<QueryResult<String>> mDelivered = new ArrayList<>();
+    private CountDownLatch mFirstQueryStarted = new CountDownLatch(1);
+    private CountDownLatch mReleaseFirstQuery = new CountDownLatch(1);
+    private boolean mIsFirstQueryCancelled;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        mFilter.setShouldCloseAfterClick(false);
+        mFilter.addFilterOption(0, "A", 1, 300, TestFilters.STRING_CALLBACK);
+        mFilter.addFilterOption(0, "B", 1, 300, TestFilters.STRING_CALLBACK);
+        mFilter.addFilterOption(0, "C", 1, 300, TestFilters.STRING_CALLBACK);
+        mFilterHolder = mFilter.getFilter(0, String.class);
+
+        mFilter.setAsyncQuery(new FlexibleFilter.QueryEvaluator<String>() {
+            @Override
+            public void evaluate(SelectionSnapshot selections, QueryResult<String> result) {
+                String selected = selections.getSelected(0);
+                if ("A".equals(selected)) {
+                    mFirstQueryStarted.countDown();
+                    try {
+                        mReleaseFirstQuery.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    mIsFirstQueryCancelled = result.isCancelled();
+                    return;
+                }
+                if ("C".equals(selected)) {
+                    throw new IllegalStateException("Query failed");
+                }
+                result.setResult(selected);
+                result.setCount(0, "A", 7);
+            }
+        }, new FlexibleFilter.QueryResultCallback<String>() {
+            @Override
+            public void queryEvaluated(QueryResult<String> result) {
+                mDelivered.add(result);
+            }
+        });
+    }
+
+    @Test
+    public void optionSelect_onlyDeliversLatestQuery() throws InterruptedException {
+        mFilter.optionSelect(mFilterHolder, "A");
+        assertTrue(mFirstQueryStarted.await(5, TimeUnit.SECONDS));
+        mFilter.optionSelect(mFilterHolder, "B");
+        mReleaseFirstQuery.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mDelivered.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            ShadowLooper.runUiThreadTasks();
+        }
+
+        assertTrue(mIsFirstQueryCancelled);
+        assertEquals(1, mDelivered.size());
+        assertEquals("B", mDelivered.get(0).getResult());
+        assertEquals("B", mDelivered.get(0).getSelections().getSelected(0));
+        assertEquals(7, mFilterHolder.getFilterButton("A").getResultCount());
+    }
+
+    @Test
+    public void optionSelect_throwingEvaluatorThrowsOnMainThread() throws InterruptedException {
+        mFilter.optionSelect(mFilterHolder, "C");
+
+        IllegalStateException thrown = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thrown == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            try {
+                ShadowLooper.runUiThreadTasks();
+            } catch (IllegalStateException e) {
+                thrown = e;
+            }
+        }
+
+        assertNotNull(thrown);
+        assertEquals("Query failed", thrown.getMessage());
+        assertTrue(mDelivered.isEmpty());
+    }
+}
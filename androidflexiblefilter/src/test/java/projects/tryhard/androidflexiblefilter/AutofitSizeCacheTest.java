@@ -0,0 +1,119 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.graphics.Typeface;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.widget.TextView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check solved text sizes are shared through the cache, and only reused for the same text and paint.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AutofitSizeCacheTest {
+    private static final int WIDTH = 200;
+
+    private TextView mTextView;
+    private int mHitCount;
+    private int mMissCount;
+
+    @Before
+    public void setUp() {
+        AutofitHelper.clearSizeCache();
+        mTextView = new TextView(RuntimeEnvironment.application);
+        mTextView.setTextLocale(Locale.US);
+        markCounts();
+    }
+
+    @Test
+    public void prefetch_sameTextIsSolvedOnce() {
+        AutofitHelper.Prefetcher prefetcher = newPrefetcher();
+        prefetcher.prefetch("Option(1)", WIDTH);
+        assertCounts(0, 1);
+
+        prefetcher.prefetch("Option(1)", WIDTH);
+        newPrefetcher().prefetch("Option(1)", WIDTH);
+        assertCounts(2, 1);
+
+        prefetcher.prefetch("Option(1)", WIDTH + 1);
+        prefetcher.prefetch("Option(2)", WIDTH);
+        assertCounts(2, 3);
+    }
+
+    @Test
+    public void prefetch_oldestSizeIsEvictedWhenFull() {
+        AutofitHelper.Prefetcher prefetcher = newPrefetcher();
+        for (int i = 0; i <= AutofitHelper.DEFAULT_SIZE_CACHE_SIZE; i++) {
+            prefetcher.prefetch("Option" + i, WIDTH);
+        }
+        assertCounts(0, AutofitHelper.DEFAULT_SIZE_CACHE_SIZE + 1);
+
+        prefetcher.prefetch("Option" + AutofitHelper.DEFAULT_SIZE_CACHE_SIZE, WIDTH);
+        assertCounts(1, 0);
+
+        // The first one is pushed out by the last one.
+        prefetcher.prefetch("Option0", WIDTH);
+        assertCounts(0, 1);
+    }
+
+    @Test
+    public void prefetch_styledTextIsNotCached() {
+        SpannableString text = new SpannableString("Option(1)");
+        text.setSpan(new StyleSpan(Typeface.BOLD), 0, 6, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+
+        AutofitHelper.Prefetcher prefetcher = newPrefetcher();
+        prefetcher.prefetch(text, WIDTH);
+        prefetcher.prefetch(text, WIDTH);
+        assertCounts(0, 0);
+
+        // A span-less spanned text is as good as its string.
+        prefetcher.prefetch(new SpannableString("Option(1)"), WIDTH);
+        prefetcher.prefetch("Option(1)", WIDTH);
+        assertCounts(1, 1);
+    }
+
+    @Test
+    public void prefetch_localeAndFontFeaturesArePartOfTheKey() {
+        newPrefetcher().prefetch("Option(1)", WIDTH);
+        assertCounts(0, 1);
+
+        mTextView.setTextLocale(Locale.JAPAN);
+        newPrefetcher().prefetch("Option(1)", WIDTH);
+        assertCounts(0, 1);
+
+        mTextView.setFontFeatureSettings("smcp");
+        newPrefetcher().prefetch("Option(1)", WIDTH);
+        assertCounts(0, 1);
+
+        newPrefetcher().prefetch("Option(1)", WIDTH);
+        assertCounts(1, 0);
+    }
+
+    private AutofitHelper.Prefetcher newPrefetcher() {
+        return AutofitHelper.create(mTextView).setMaxLines(1).newPrefetcher();
+    }
+
+    private void markCounts() {
+        mHitCount = AutofitHelper.getSizeCacheHitCount();
+        mMissCount = AutofitHelper.getSizeCacheMissCount();
+    }
+
+    /**
+     * Check hits and misses since the last check, counts of the cache are never reset.
+     */
+    private void assertCounts(int hitCount, int missCount) {
+        assertEquals(hitCount, AutofitHelper.getSizeCacheHitCount() - mHitCount);
+        assertEquals(missCount, AutofitHelper.getSizeCacheMissCount() - mMissCount);
+        markCounts();
+    }
+}
@@ -0,0 +1,69 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the iterative solver with a fake measurer, every char is half the text size wide.
+ */
+public class AutofitSolverTest {
+    private static final float PRECISION = 0.5f;
+
+    private final AutofitSolver mSolver = new AutofitSolver();
+    private final FakeTextMeasurer mMeasurer = new FakeTextMeasurer();
+
+    @Test
+    public void singleLine_keepsMaxSizeWhenFits() {
+        assertEquals(40f, mSolver.solve(mMeasurer, "ABC", 100, 1, 40f, PRECISION), 0f);
+        assertEquals(1, mMeasurer.mMeasureCount);
+    }
+
+    @Test
+    public void singleLine_solvesWithOneMeasureWhenLinear() {
+        // 10 chars at 40 is 200 wide, half of it fits.
+        float size = mSolver.solve(mMeasurer, "ABCDEFGHIJ", 100, 1, 40f, PRECISION);
+
+        assertEquals(20f, size, 0f);
+        assertEquals(2, mMeasurer.mMeasureCount);
+    }
+
+    @Test
+    public void singleLine_stepsDownWhenWiderThanLinear() {
+        mMeasurer.mExtraWidth = 3;
+        float size = mSolver.solve(mMeasurer, "ABCDEFGHIJ", 100, 1, 40f, PRECISION);
+
+        assertTrue(mMeasurer.measureWidth("ABCDEFGHIJ", size) <= 100);
+        assertTrue(mMeasurer.measureWidth("ABCDEFGHIJ", size + PRECISION) > 100);
+    }
+
+    @Test
+    public void multiLine_findsLargestFittingSize() {
+        float size = mSolver.solve(mMeasurer, "ABCDEFGHIJKLMNOPQRST", 100, 2, 40f, PRECISION);
+
+        float[] maxLineWidth = new float[1];
+        assertTrue(mMeasurer.measureLines("ABCDEFGHIJKLMNOPQRST", size, 100, maxLineWidth) <= 2);
+        assertTrue(mMeasurer.measureLines("ABCDEFGHIJKLMNOPQRST", size + PRECISION, 100, maxLineWidth) > 2);
+    }
+
+    private static class FakeTextMeasurer implements AutofitSolver.TextMeasurer {
+        private int mMeasureCount;
+        private float mExtraWidth;
+
+        @Override
+        public float measureWidth(CharSequence text, float textSize) {
+            mMeasureCount++;
+            return text.length() * textSize / 2 + (textSize * text.length() > 0 ? mExtraWidth : 0);
+        }
+
+        @Override
+        public int measureLines(CharSequence text, float textSize, int width, float[] outMaxLineWidth) {
+            mMeasureCount++;
+            float charWidth = textSize / 2;
+            int charsPerLine = Math.max(1, (int) (width / charWidth));
+            outMaxLineWidth[0] = Math.min(text.length(), charsPerLine) * charWidth;
+            return (text.length() + charsPerLine - 1) / charsPerLine;
+        }
+    }
+}
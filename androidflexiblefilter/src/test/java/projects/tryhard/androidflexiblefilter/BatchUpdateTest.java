@@ -0,0 +1,95 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Check a batch updates every changed filter once, when the outermost batch is committed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatchUpdateTest {
+    private static final int FILTER_COUNT = 3;
+
+    private FlexibleFilter<String> mFilter;
+    private HistogramFilterMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        for (int filterNum = 1; filterNum < FILTER_COUNT; filterNum++) {
+            mFilter.addFilter(filterNum, "ALL", -1);
+        }
+        for (int filterNum = 0; filterNum < FILTER_COUNT; filterNum++) {
+            for (int i = 0; i < 5; i++) {
+                mFilter.addFilterOption(filterNum, "Option" + i, i, 300, TestFilters.STRING_CALLBACK);
+            }
+        }
+        mMetrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(mMetrics);
+    }
+
+    @Test
+    public void nestedBatches_updateEveryChangedFilterOnceAtOutermostCommit() {
+        final FilterHolder<String> first = mFilter.getFilter(0, String.class);
+        final FilterHolder<String> second = mFilter.getFilter(1, String.class);
+
+        mFilter.beginUpdate();
+        mFilter.updateCertainOption(first, "Option1", 10);
+        mFilter.batch(new Runnable() {
+            @Override
+            public void run() {
+                mFilter.updateCertainOption(first, "Option2", 20);
+                mFilter.updateCertainOption(second, "Option1", 30);
+            }
+        });
+        mFilter.updateCertainOption(second, "Option2", 40);
+
+        assertEquals(0, mMetrics.getFilterUpdates().getCount());
+        mFilter.commitUpdate();
+
+        assertEquals(2, mMetrics.getFilterUpdates().getCount());
+        assertEquals(0 + 10 + 20 + 3 + 4, first.getOptions().get(0).getResultCount());
+        assertEquals(0 + 30 + 40 + 3 + 4, second.getOptions().get(0).getResultCount());
+    }
+
+    @Test
+    public void emptyBatch_updatesNothing() {
+        mFilter.beginUpdate();
+        mFilter.commitUpdate();
+
+        assertEquals(0, mMetrics.getFilterUpdates().getCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void commitUpdate_withoutBeginUpdateThrows() {
+        mFilter.commitUpdate();
+    }
+
+    @Test
+    public void batch_closedWhenUpdatesThrow() {
+        final FilterHolder<String> filterHolder = mFilter.getFilter(0, String.class);
+        try {
+            mFilter.batch(new Runnable() {
+                @Override
+                public void run() {
+                    mFilter.updateCertainOption(filterHolder, "Option1", 10);
+                    throw new IllegalArgumentException();
+                }
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        // What was changed before the exception is still applied, and later updates aren't held anymore.
+        assertEquals(1, mMetrics.getFilterUpdates().getCount());
+        mFilter.updateCertainOption(filterHolder, "Option2", 20);
+        assertEquals(2, mMetrics.getFilterUpdates().getCount());
+        assertEquals(0 + 10 + 20 + 3 + 4, filterHolder.getOptions().get(0).getResultCount());
+    }
+}
@@ -0,0 +1,110 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.graphics.Rect;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the clip animation lays the filter out once and only moves its clip, and its frames are counted once.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ClipAnimationTest {
+    private static final int MAX_FRAMES = 200;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private HistogramFilterMetrics mMetrics;
+    private List<FrameStats> mFrameStats = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        for (int i = 0; i < 10; i++) {
+            mFilter.addFilterOption(0, "Option" + i, 1, 300, TestFilters.STRING_CALLBACK);
+        }
+        mFilter.setOpeningFilterOne(0);
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        mFilterHolder = mFilter.getFilter(0, String.class);
+
+        mFilter.setAnimationMode(FlexibleFilter.AnimationMode.CLIP);
+        mMetrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(mMetrics);
+        mFilter.setAnimationStatsCallback(new FlexibleFilter.AnimationStatsCallback() {
+            @Override
+            public void animationEnded(FrameStats frameStats) {
+                mFrameStats.add(frameStats);
+            }
+        });
+    }
+
+    @Test
+    public void open_setsHeightOnceAndOnlyAnimatesTheClip() {
+        View container = mFilterHolder.getContainer();
+        mFilter.open();
+
+        int height = mFilterHolder.getHeight();
+        assertTrue(height > 0);
+        assertEquals(height, container.getLayoutParams().height);
+        assertEquals(View.LAYER_TYPE_HARDWARE, container.getLayerType());
+
+        int lastClipBottom = -1;
+        int clipChangeCount = 0;
+        for (int i = 0; i < MAX_FRAMES && mFrameStats.isEmpty(); i++) {
+            Rect clipBounds = container.getClipBounds();
+            assertNotNull(clipBounds);
+            assertTrue(clipBounds.bottom >= lastClipBottom);
+            assertTrue(clipBounds.bottom <= height);
+            if (clipBounds.bottom != lastClipBottom) {
+                clipChangeCount++;
+            }
+            lastClipBottom = clipBounds.bottom;
+            // The layout height never changes while animating.
+            assertEquals(height, container.getLayoutParams().height);
+            ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(1, mFrameStats.size());
+        assertTrue(clipChangeCount > 1);
+        assertEquals(height, container.getLayoutParams().height);
+        assertNull(container.getClipBounds());
+        assertEquals(View.LAYER_TYPE_NONE, container.getLayerType());
+    }
+
+    @Test
+    public void open_frameStatsAreConsistent() {
+        mFilter.open();
+        for (int i = 0; i < MAX_FRAMES && mFrameStats.isEmpty(); i++) {
+            ShadowLooper.idleMainLooper(16, TimeUnit.MILLISECONDS);
+        }
+
+        assertEquals(1, mFrameStats.size());
+        FrameStats frameStats = mFrameStats.get(0);
+        assertEquals(FlexibleFilter.AnimationMode.CLIP, frameStats.getAnimationMode());
+        assertTrue(frameStats.isOpening());
+        assertTrue(frameStats.getFrameCount() > 0);
+        assertTrue(frameStats.getAverageFrameNanos() > 0);
+        assertTrue(frameStats.getAverageFrameNanos() <= frameStats.getMaxFrameNanos());
+        assertTrue(frameStats.getSlowFrameCount() <= frameStats.getFrameCount());
+
+        // The metrics get the same frames as the stats.
+        HistogramFilterMetrics.Histogram openFrames = mMetrics.getOpenFrames();
+        assertEquals(frameStats.getFrameCount(), openFrames.getCount());
+        assertEquals(frameStats.getMaxFrameNanos(), openFrames.getMaxNanos());
+        assertEquals(frameStats.getAverageFrameNanos(), openFrames.getAverageNanos());
+        assertEquals(0, mMetrics.getCloseFrames().getCount());
+    }
+}
@@ -0,0 +1,271 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check counts from the engine are the same as counting the items by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FacetEngineTest {
+    private static final int COLOR_FILTER = 0;
+    private static final int SIZE_FILTER = 1;
+    private static final int RANGE_FILTER = 2;
+    private static final String[] COLORS = new String[]{"Red", "Green", "Blue"};
+    private static final String[] SIZES = new String[]{"S", "M", "L", "XL"};
+
+    private FlexibleFilter<String> mFilter;
+    private FacetEngine<int[]> mFacetEngine;
+    private List<int[]> mItems;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter(COLOR_FILTER, FlexibleFilter.ContainerMode.FLEXBOX);
+        mFilter.addFilter(SIZE_FILTER, "ALL", -1);
+        mFilter.setShouldCloseAfterClick(false);
+        for (String color : COLORS) {
+            mFilter.addFilterOption(COLOR_FILTER, color, 0, 300, TestFilters.STRING_CALLBACK);
+        }
+        for (String size : SIZES) {
+            mFilter.addFilterOption(SIZE_FILTER, size, 0, 300, TestFilters.STRING_CALLBACK);
+        }
+
+        // Every item is {color, size}.
+        mItems = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            mItems.add(new int[]{(i * 7) % COLORS.length, (i * 13) % SIZES.length});
+        }
+
+        mFacetEngine = new FacetEngine<>(mFilter);
+        mFacetEngine.addFacet(COLOR_FILTER, String.class, new FacetEngine.KeyExtractor<int[], String>() {
+            @Override
+            public String getKey(int[] item) {
+                return COLORS[item[0]];
+            }
+        });
+        mFacetEngine.addFacet(SIZE_FILTER, String.class, new FacetEngine.KeyExtractor<int[], String>() {
+            @Override
+            public String getKey(int[] item) {
+                return SIZES[item[1]];
+            }
+        });
+        mFacetEngine.setItems(mItems);
+    }
+
+    @Test
+    public void setItems_countsEveryOption() {
+        assertCounts(-1, -1);
+        assertEquals(mItems.size(), mFacetEngine.getMatchingItems().size());
+    }
+
+    @Test
+    public void optionSelect_countsOtherFacetsForTheSelection() {
+        select(COLOR_FILTER, 1);
+        assertCounts(1, -1);
+
+        select(SIZE_FILTER, 2);
+        assertCounts(1, 2);
+
+        select(COLOR_FILTER, -1);
+        assertCounts(-1, 2);
+    }
+
+    @Test
+    public void getMatchingItems_matchesEverySelection() {
+        select(COLOR_FILTER, 0);
+        select(SIZE_FILTER, 3);
+
+        List<int[]> matchingItems = mFacetEngine.getMatchingItems();
+        assertEquals(countItems(0, 3), matchingItems.size());
+        for (int[] item : matchingItems) {
+            assertEquals(0, item[0]);
+            assertEquals(3, item[1]);
+        }
+    }
+
+    @Test
+    public void filterUnSelectedAll_seesTheClearedSelection() {
+        select(COLOR_FILTER, 0);
+        select(SIZE_FILTER, 3);
+
+        final List<int[]> matchingItems = new ArrayList<>();
+        mFilter.getFilter(COLOR_FILTER, String.class).setFilterClickCallback(new FlexibleFilter.FilterClickCallback<String>() {
+            @Override
+            public void filterOptionClicked(int filterNum, String filterId) {
+
+            }
+
+            @Override
+            public void filterUnSelectedAll(int filterNum) {
+                matchingItems.addAll(mFacetEngine.getMatchingItems());
+            }
+        });
+        select(COLOR_FILTER, -1);
+
+        assertEquals(countItems(-1, 3), matchingItems.size());
+        for (int[] item : matchingItems) {
+            assertEquals(3, item[1]);
+        }
+    }
+
+    @Test
+    public void getMatchingIds_goesThroughMatchingItemsInOrder() {
+        select(COLOR_FILTER, 2);
+        select(SIZE_FILTER, 1);
+
+        int lastId = -1;
+        int count = 0;
+        IdIterator iterator = mFacetEngine.getMatchingIds();
+        while (iterator.hasNext()) {
+            int id = iterator.next();
+            assertTrue(id > lastId);
+            assertEquals(2, mFacetEngine.getItem(id)[0]);
+            assertEquals(1, mFacetEngine.getItem(id)[1]);
+            lastId = id;
+            count++;
+        }
+        assertEquals(countItems(2, 1), count);
+        assertEquals(count, mFacetEngine.getMatchingCount());
+    }
+
+    @Test
+    public void itemChanges_onlyAdjustCountsAndUpdateInNextFrame() {
+        select(COLOR_FILTER, 1);
+
+        int[] added = new int[]{1, 2};
+        int[] removed = mItems.get(10);
+        int[] oldItem = mItems.get(20);
+        int[] newItem = new int[]{1, 0};
+        mFacetEngine.itemAdded(added);
+        mFacetEngine.itemRemoved(removed);
+        mFacetEngine.itemChanged(oldItem, newItem);
+        mItems.add(added);
+        mItems.remove(removed);
+        mItems.set(mItems.indexOf(oldItem), newItem);
+
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+        assertCounts(1, -1);
+        assertEquals(countItems(1, -1), mFacetEngine.getMatchingCount());
+
+        select(SIZE_FILTER, 2);
+        assertCounts(1, 2);
+    }
+
+    @Test
+    public void multiSelect_matchesAnyOfTheSelectedOptions() {
+        final List<String> selected = new ArrayList<>();
+        final List<String> unselected = new ArrayList<>();
+        mFilter.setMultiSelect(COLOR_FILTER, true);
+        mFilter.getFilter(COLOR_FILTER, String.class).setMultiSelectCallback(new FlexibleFilter.MultiSelectCallback<String>() {
+            @Override
+            public void filterSelectionChanged(int filterNum, List<String> selectedIds, List<String> unselectedIds) {
+                selected.addAll(selectedIds);
+                unselected.addAll(unselectedIds);
+            }
+        });
+
+        select(COLOR_FILTER, 0);
+        select(COLOR_FILTER, 2);
+        assertEquals(Arrays.asList(COLORS[0], COLORS[2]), selected);
+        assertTrue(unselected.isEmpty());
+        assertEquals(countItems(0, -1) + countItems(2, -1), mFacetEngine.getMatchingCount());
+        FilterHolder<String> sizeHolder = mFilter.getFilter(SIZE_FILTER, String.class);
+        for (int i = 0; i < SIZES.length; i++) {
+            assertEquals(countItems(0, i) + countItems(2, i), sizeHolder.getFilterButton(SIZES[i]).getResultCount());
+        }
+
+        select(SIZE_FILTER, 1);
+        assertEquals(countItems(0, 1) + countItems(2, 1), mFacetEngine.getMatchingCount());
+
+        // Clicking a selected option again takes it out.
+        select(COLOR_FILTER, 0);
+        assertEquals(Collections.singletonList(COLORS[0]), unselected);
+        assertCounts(2, 1);
+        assertEquals(countItems(2, 1), mFacetEngine.getMatchingItems().size());
+    }
+
+    @Test
+    public void getRangeCount_countsRunsOfBuckets() {
+        // Sizes S and M are in bucket 0, L in 1, XL in 2.
+        RangeBuckets buckets = RangeBuckets.ofEdges(0, 15, 25, Double.POSITIVE_INFINITY);
+        mFilter.addFilter(RANGE_FILTER, new NumericRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY), -1);
+        for (NumericRange range : buckets.getRanges()) {
+            mFilter.addFilterOption(RANGE_FILTER, range, 0, 300, new FlexibleFilter.OptionGetStringCallback<NumericRange>() {
+                @Override
+                public String getString(NumericRange filterId, int count) {
+                    return filterId + "(" + count + ")";
+                }
+            });
+        }
+        mFacetEngine.addRangeFacet(RANGE_FILTER, buckets, new FacetEngine.ValueExtractor<int[]>() {
+            @Override
+            public double getValue(int[] item) {
+                return item[1] * 10;
+            }
+        });
+
+        assertEquals(countItems(-1, 0) + countItems(-1, 1), mFacetEngine.getRangeCount(RANGE_FILTER, 0, 0));
+        assertEquals(countItems(-1, 2) + countItems(-1, 3), mFacetEngine.getRangeCount(RANGE_FILTER, 1, 2));
+        assertEquals(mItems.size(), mFacetEngine.getRangeCount(RANGE_FILTER, 0, 2));
+
+        select(COLOR_FILTER, 1);
+        assertEquals(countItems(1, 2) + countItems(1, 3), mFacetEngine.getRangeCount(RANGE_FILTER, 1, 2));
+        // Not a range facet.
+        assertEquals(0, mFacetEngine.getRangeCount(SIZE_FILTER, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getRangeCount_bucketOutOfTheFacetThrows() {
+        mFilter.addFilter(RANGE_FILTER, new NumericRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY), -1);
+        mFacetEngine.addRangeFacet(RANGE_FILTER, RangeBuckets.ofEdges(0, 20, Double.POSITIVE_INFINITY),
+                new FacetEngine.ValueExtractor<int[]>() {
+                    @Override
+                    public double getValue(int[] item) {
+                        return item[1];
+                    }
+                });
+
+        mFacetEngine.getRangeCount(RANGE_FILTER, 0, 2);
+    }
+
+    private void select(int filterNum, int option) {
+        FilterHolder<String> filterHolder = mFilter.getFilter(filterNum, String.class);
+        String[] keys = filterNum == COLOR_FILTER ? COLORS : SIZES;
+        mFilter.optionSelect(filterHolder, option == -1 ? null : keys[option]);
+    }
+
+    private void assertCounts(int selectedColor, int selectedSize) {
+        FilterHolder<String> colorHolder = mFilter.getFilter(COLOR_FILTER, String.class);
+        for (int i = 0; i < COLORS.length; i++) {
+            assertEquals(countItems(i, selectedSize), colorHolder.getFilterButton(COLORS[i]).getResultCount());
+        }
+        FilterHolder<String> sizeHolder = mFilter.getFilter(SIZE_FILTER, String.class);
+        for (int i = 0; i < SIZES.length; i++) {
+            assertEquals(countItems(selectedColor, i), sizeHolder.getFilterButton(SIZES[i]).getResultCount());
+        }
+    }
+
+    /**
+     * -1 means any.
+     */
+    private int countItems(int color, int size) {
+        int count = 0;
+        for (int[] item : mItems) {
+            if ((color == -1 || item[0] == color) && (size == -1 || item[1] == size)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,91 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.graphics.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check two filters on one screen keep their own config, and a config change only redraws what it changes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FilterConfigTest {
+    private static final int OPTION_COUNT = 10;
+
+    private FlexibleFilter<String> mFilter;
+    private FlexibleFilter<String> mOtherFilter;
+    private HistogramFilterMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mFilter = newFilter();
+        mOtherFilter = newFilter();
+        mMetrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(mMetrics);
+    }
+
+    @Test
+    public void setConfig_doesNotChangeOtherFilters() {
+        mFilter.setShouldHideAll(true);
+        mFilter.setSelectedTextColor(R.color.black);
+
+        assertTrue(mFilter.isShouldHideAll());
+        assertFalse(mOtherFilter.isShouldHideAll());
+        assertEquals(FilterConfig.DEFAULT, mOtherFilter.getConfig());
+
+        // Both colors are black now, the other filter still has white for selected options.
+        int[] selectedState = new int[]{android.R.attr.state_selected};
+        Option<String> option = mFilter.getFilter(0, String.class).getOptions().get(1);
+        Option<String> otherOption = mOtherFilter.getFilter(0, String.class).getOptions().get(1);
+        assertEquals(Color.BLACK, option.getAutofitTextView().getTextColors().getColorForState(selectedState, 0));
+        assertEquals(Color.WHITE, otherOption.getAutofitTextView().getTextColors().getColorForState(selectedState, 0));
+    }
+
+    @Test
+    public void setConfig_sameConfigDoesNothing() {
+        mFilter.setConfig(mFilter.getConfig().buildUpon().build());
+
+        assertEquals(0, mMetrics.getFilterUpdates().getCount());
+    }
+
+    @Test
+    public void setChangeColorWhenSelect_onlyRedrawsTheSelectedOption() {
+        mFilter.optionSelect(mFilter.getFilter(0, String.class), "Option3");
+        mMetrics.reset();
+
+        mFilter.setChangeColorWhenSelect(false);
+
+        assertEquals(1, mMetrics.getFilterUpdates().getCount());
+        assertEquals(1, mMetrics.getTouchedOptionCount());
+    }
+
+    @Test
+    public void setShouldHideZeroFilters_doesNotStyleOptionsAgain() {
+        mMetrics.reset();
+
+        mFilter.setShouldHideZeroFilters(true);
+
+        assertEquals(0, mMetrics.getTouchedOptionCount());
+        List<Option<String>> options = mFilter.getFilter(0, String.class).getOptions();
+        for (int i = 1; i < options.size(); i++) {
+            assertEquals(options.get(i).getResultCount() > 0, options.get(i).isVisible());
+        }
+    }
+
+    private static FlexibleFilter<String> newFilter() {
+        FlexibleFilter<String> filter = TestFilters.newFilter();
+        filter.setShouldCloseAfterClick(false);
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            filter.addFilterOption(0, "Option" + i, i % 2, 300, TestFilters.STRING_CALLBACK);
+        }
+        return filter;
+    }
+}
@@ -0,0 +1,99 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Check finding a filter by filterNum doesn't depend on how many filters we have.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FilterLookupTest {
+    private static final int FILTER_COUNT = 40;
+
+    private FlexibleFilter<String> mFilter;
+    private TestFilters.ErrorCounter mErrorCounter;
+    private CountingFilterIndex mFilterIndex;
+
+    @Before
+    public void setUp() {
+        mErrorCounter = new TestFilters.ErrorCounter();
+        mFilter = TestFilters.init(new FlexibleFilter<String>(RuntimeEnvironment.application) {
+            @Override
+            FilterIndex newFilterIndex() {
+                mFilterIndex = new CountingFilterIndex();
+                return mFilterIndex;
+            }
+        }, 0, FlexibleFilter.ContainerMode.FLEXBOX, mErrorCounter);
+
+        for (int i = 1; i < FILTER_COUNT; i++) {
+            mFilter.addFilter(i, "ALL", -1);
+            mFilter.addFilterOption(i, "A", 1, 300, TestFilters.STRING_CALLBACK);
+            mFilter.addFilterOption(i, "B", 2, 300, TestFilters.STRING_CALLBACK);
+        }
+    }
+
+    @Test
+    public void getFilter_findsEveryFilter() {
+        for (int i = 0; i < FILTER_COUNT; i++) {
+            assertEquals(i, mFilter.getFilter(i, String.class).getFilterNum());
+        }
+        assertEquals(FILTER_COUNT, mFilter.getFilterIndex().size());
+        assertEquals(0, mErrorCounter.mNoSuchFilterErrorCount);
+    }
+
+    @Test
+    public void getFilter_reportsMissingFilterOnce() {
+        assertNull(mFilter.getFilter(FILTER_COUNT, String.class));
+        assertEquals(1, mErrorCounter.mNoSuchFilterErrorCount);
+    }
+
+    @Test
+    public void addFilter_keepsFirstFilterForDuplicateFilterNum() {
+        FilterHolder<String> first = mFilter.getFilter(3, String.class);
+        mFilter.addFilter(3, "ALL", -1);
+        assertSame(first, mFilter.getFilter(3, String.class));
+    }
+
+    @Test
+    public void optionSelect_doesNotLookUpFiltersWhenStayingOpen() {
+        mFilter.setShouldCloseAfterClick(false);
+        FilterHolder<String> filterHolder = mFilter.getFilter(FILTER_COUNT - 1, String.class);
+
+        mFilterIndex.mLookupCount = 0;
+        mFilter.optionSelect(filterHolder, "B");
+
+        assertEquals(0, mFilterIndex.mLookupCount);
+    }
+
+    @Test
+    public void optionSelect_looksUpOnlyOpeningFiltersWhenClosing() {
+        mFilter.setShouldCloseAfterClick(true);
+        mFilter.setOpeningFilterOne(FILTER_COUNT - 1);
+        FilterHolder<String> filterHolder = mFilter.getFilter(FILTER_COUNT - 1, String.class);
+
+        mFilterIndex.mLookupCount = 0;
+        mFilter.optionSelect(filterHolder, "A");
+
+        assertEquals(mFilter.getCurrentOpeningFilters().size(), mFilterIndex.mLookupCount);
+    }
+
+    /**
+     * Counts how many times a filter is looked up.
+     */
+    private static final class CountingFilterIndex extends FilterIndex {
+        private long mLookupCount = 0;
+
+        @Override
+        FilterHolder get(int filterNum) {
+            mLookupCount++;
+            return super.get(filterNum);
+        }
+    }
+}
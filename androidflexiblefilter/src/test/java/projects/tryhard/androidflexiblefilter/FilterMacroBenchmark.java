@@ -0,0 +1,302 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the public lifecycle of {@link FlexibleFilter} end to end under Robolectric, so it runs on a build box
+ * without a device. Only runs when asked:
+ * ./gradlew :androidflexiblefilter:testDebugUnitTest -Pbenchmark --tests '*FilterMacroBenchmark'
+ * Results are written as JSON to build/reports/benchmark/macro.json, compare them between releases.
+ * Numbers are for the JVM and Robolectric, they show changes of our code, not the speed on a device.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FilterMacroBenchmark {
+    private static final int[] FILTER_COUNTS = new int[]{1, 10, 50};
+    private static final int[] OPTION_COUNTS = new int[]{10, 100, 1000};
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int ITERATIONS = 5;
+    /**
+     * Items counted by the {@link FacetEngine}, spread over the options of every filter.
+     */
+    private static final int ITEM_COUNT = 10000;
+
+    private final ThreadMXBean mThreadMXBean = ManagementFactory.getThreadMXBean();
+    private final List<Result> mResults = new ArrayList<>();
+
+    @Test
+    public void lifecycle() throws IOException {
+        Assume.assumeTrue("Run with -Pbenchmark", Boolean.getBoolean("flexiblefilter.benchmark"));
+
+        for (int filterCount : FILTER_COUNTS) {
+            for (int optionCount : OPTION_COUNTS) {
+                runLifecycle(filterCount, optionCount);
+            }
+        }
+
+        String output = System.getProperty("flexiblefilter.benchmarkOutput", "build/reports/benchmark/macro.json");
+        writeJson(new File(output));
+    }
+
+    private void runLifecycle(int filterCount, int optionCount) {
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + ITERATIONS; iteration++) {
+            boolean isWarmup = iteration < WARMUP_ITERATIONS;
+            Lifecycle lifecycle = new Lifecycle(filterCount, optionCount);
+
+            time(samples, isWarmup, "init", lifecycle.mInit);
+            time(samples, isWarmup, "addFilterOptions", lifecycle.mAddFilterOptions);
+            time(samples, isWarmup, "setOpeningFilters", lifecycle.mSetOpeningFilters);
+            time(samples, isWarmup, "open", lifecycle.mOpen);
+            settle();
+            time(samples, isWarmup, "getFilterButton", lifecycle.mGetFilterButton);
+            time(samples, isWarmup, "optionSelect", lifecycle.mOptionSelect);
+            time(samples, isWarmup, "updateAllFilters", lifecycle.mUpdateAllFilters);
+            time(samples, isWarmup, "facetSetItems", lifecycle.mFacetSetItems);
+            time(samples, isWarmup, "facetOptionSelect", lifecycle.mFacetOptionSelect);
+            time(samples, isWarmup, "close", lifecycle.mClose);
+            settle();
+        }
+
+        for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+            Result result = new Result(entry.getKey(), filterCount, optionCount, entry.getValue());
+            mResults.add(result);
+            System.out.println(result);
+        }
+    }
+
+    private void time(Map<String, Samples> samples, boolean isWarmup, String operation, Runnable runnable) {
+        long allocatedBefore = getAllocatedBytes();
+        long start = System.nanoTime();
+        runnable.run();
+        long nanos = System.nanoTime() - start;
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        if (isWarmup) return;
+
+        Samples operationSamples = samples.get(operation);
+        if (operationSamples == null) {
+            operationSamples = new Samples();
+            samples.put(operation, operationSamples);
+        }
+        operationSamples.add(nanos, allocated);
+    }
+
+    /**
+     * Let animations and frame callbacks finish, it's not timed.
+     */
+    private static void settle() {
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    /**
+     * @return Bytes allocated by this thread, -1 if the JVM can't tell.
+     */
+    private long getAllocatedBytes() {
+        if (mThreadMXBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mThreadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private void writeJson(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Can't create " + parent);
+        }
+        try (Writer writer = new FileWriter(file)) {
+            writer.write("[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.write("  ");
+                writer.write(mResults.get(i).toJson());
+                writer.write(i == mResults.size() - 1 ? "\n" : ",\n");
+            }
+            writer.write("]\n");
+        }
+    }
+
+    /**
+     * Every step of one filter from init to close, each step uses what the steps before it made.
+     */
+    private static final class Lifecycle {
+        private final int mFilterCount;
+        private final int mOptionCount;
+        private FlexibleFilter<String> mFilter;
+        private FacetEngine<Integer> mFacetEngine;
+
+        private final Runnable mInit = new Runnable() {
+            @Override
+            public void run() {
+                mFilter = TestFilters.newFilter();
+                mFilter.setShouldCloseAfterClick(false);
+                for (int filterNum = 1; filterNum < mFilterCount; filterNum++) {
+                    mFilter.addFilter(filterNum, "ALL", -1);
+                }
+            }
+        };
+        private final Runnable mAddFilterOptions = new Runnable() {
+            @Override
+            public void run() {
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    List<OptionSpec<String>> optionSpecs = new ArrayList<>(mOptionCount);
+                    for (int i = 0; i < mOptionCount; i++) {
+                        optionSpecs.add(new OptionSpec<String>("Option" + i, i % 7, 300, TestFilters.STRING_CALLBACK));
+                    }
+                    mFilter.addFilterOptions(filterNum, optionSpecs);
+                }
+            }
+        };
+        private final Runnable mSetOpeningFilters = new Runnable() {
+            @Override
+            public void run() {
+                List<Integer> openingFilters = new ArrayList<>(mFilterCount);
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    openingFilters.add(filterNum);
+                }
+                mFilter.setOpeningFilters(openingFilters);
+            }
+        };
+        private final Runnable mOpen = new Runnable() {
+            @Override
+            public void run() {
+                mFilter.open();
+            }
+        };
+        private final Runnable mGetFilterButton = new Runnable() {
+            @Override
+            public void run() {
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    FilterHolder<String> filterHolder = mFilter.getFilter(filterNum, String.class);
+                    for (int i = 0; i < mOptionCount; i++) {
+                        filterHolder.getFilterButton("Option" + i);
+                    }
+                }
+            }
+        };
+        private final Runnable mOptionSelect = new Runnable() {
+            @Override
+            public void run() {
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    mFilter.optionSelect(mFilter.getFilter(filterNum, String.class), "Option" + (mOptionCount / 2));
+                }
+            }
+        };
+        private final Runnable mUpdateAllFilters = new Runnable() {
+            @Override
+            public void run() {
+                mFilter.updateAllFilters();
+            }
+        };
+        private final Runnable mFacetSetItems = new Runnable() {
+            @Override
+            public void run() {
+                mFacetEngine = new FacetEngine<>(mFilter);
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    mFacetEngine.addFacet(filterNum, String.class, new FacetEngine.KeyExtractor<Integer, String>() {
+                        @Override
+                        public String getKey(Integer item) {
+                            return "Option" + (item % mOptionCount);
+                        }
+                    });
+                }
+                List<Integer> items = new ArrayList<>(ITEM_COUNT);
+                for (int item = 0; item < ITEM_COUNT; item++) {
+                    items.add(item);
+                }
+                mFacetEngine.setItems(items);
+            }
+        };
+        /**
+         * Includes the frame the new counts are pushed to the filters in.
+         */
+        private final Runnable mFacetOptionSelect = new Runnable() {
+            @Override
+            public void run() {
+                for (int filterNum = 0; filterNum < mFilterCount; filterNum++) {
+                    mFilter.optionSelect(mFilter.getFilter(filterNum, String.class), "Option" + (mOptionCount / 3));
+                }
+                settle();
+            }
+        };
+        private final Runnable mClose = new Runnable() {
+            @Override
+            public void run() {
+                mFilter.close();
+            }
+        };
+
+        Lifecycle(int filterCount, int optionCount) {
+            this.mFilterCount = filterCount;
+            this.mOptionCount = optionCount;
+        }
+    }
+
+    private static final class Samples {
+        private final List<Long> mNanos = new ArrayList<>();
+        private final List<Long> mAllocatedBytes = new ArrayList<>();
+
+        void add(long nanos, long allocatedBytes) {
+            mNanos.add(nanos);
+            mAllocatedBytes.add(allocatedBytes);
+        }
+    }
+
+    private static final class Result {
+        private final String mOperation;
+        private final int mFilterCount;
+        private final int mOptionCount;
+        private final long mMedianNanos;
+        private final long mMinNanos;
+        private final long mMaxNanos;
+        private final long mMedianAllocatedBytes;
+
+        Result(String operation, int filterCount, int optionCount, Samples samples) {
+            this.mOperation = operation;
+            this.mFilterCount = filterCount;
+            this.mOptionCount = optionCount;
+            long[] nanos = sorted(samples.mNanos);
+            this.mMedianNanos = nanos[nanos.length / 2];
+            this.mMinNanos = nanos[0];
+            this.mMaxNanos = nanos[nanos.length - 1];
+            long[] allocatedBytes = sorted(samples.mAllocatedBytes);
+            this.mMedianAllocatedBytes = allocatedBytes[allocatedBytes.length / 2];
+        }
+
+        String toJson() {
+            return String.format(Locale.US,
+                    "{\"operation\": \"%s\", \"filterCount\": %d, \"optionCount\": %d, \"medianNanos\": %d, "
+                            + "\"minNanos\": %d, \"maxNanos\": %d, \"allocatedBytes\": %d}",
+                    mOperation, mFilterCount, mOptionCount, mMedianNanos, mMinNanos, mMaxNanos, mMedianAllocatedBytes);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-18s filters=%-3d options=%-5d median=%.3fms allocated=%dKB",
+                    mOperation, mFilterCount, mOptionCount, mMedianNanos / 1e6, mMedianAllocatedBytes / 1024);
+        }
+
+        private static long[] sorted(List<Long> values) {
+            long[] array = new long[values.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
+            Arrays.sort(array);
+            return array;
+        }
+    }
+}
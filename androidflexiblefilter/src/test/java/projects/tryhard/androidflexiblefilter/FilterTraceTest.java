@@ -0,0 +1,100 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check every section begun is ended, so a trace is never left with an open section.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FilterTraceTest {
+    private RecordingTracer mTracer;
+
+    @Before
+    public void setUp() {
+        mTracer = new RecordingTracer();
+        FilterTrace.setTracer(mTracer);
+        FilterTrace.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        FilterTrace.setEnabled(false);
+        FilterTrace.setTracer(null);
+    }
+
+    @Test
+    public void entryPoints_sectionsAreBalanced() {
+        FlexibleFilter<String> filter = TestFilters.newFilter();
+        filter.addFilter(1, "ALL", -1);
+        filter.addFilterOption(1, "Option", 1, 300, TestFilters.STRING_CALLBACK);
+        filter.optionSelect(filter.getFilter(1, String.class), "Option");
+        filter.open();
+        filter.close();
+
+        assertEquals(0, mTracer.mDepth);
+        assertTrue(mTracer.mIsBalanced);
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.init"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.addFilter"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.addFilterOption"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.updateFilter"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.optionSelect"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.open"));
+        assertTrue(mTracer.mSections.contains("FlexibleFilter.close"));
+    }
+
+    @Test
+    public void disabled_nothingIsTraced() {
+        FilterTrace.setEnabled(false);
+        FlexibleFilter<String> filter = TestFilters.newFilter();
+        filter.addFilterOption(0, "Option", 1, 300, TestFilters.STRING_CALLBACK);
+        filter.open();
+
+        assertTrue(mTracer.mSections.isEmpty());
+    }
+
+    @Test
+    public void turnedOffInASection_stillEnded() {
+        mTracer.mShouldDisableOnFirstSection = true;
+        FlexibleFilter<String> filter = TestFilters.newFilter();
+        filter.addFilterOption(0, "Option", 1, 300, TestFilters.STRING_CALLBACK);
+
+        // Only init was begun, and it was ended though tracing was off by then.
+        assertEquals(1, mTracer.mSections.size());
+        assertEquals(0, mTracer.mDepth);
+        assertTrue(mTracer.mIsBalanced);
+    }
+
+    private static final class RecordingTracer implements FilterTrace.Tracer {
+        private final List<String> mSections = new ArrayList<>();
+        private int mDepth = 0;
+        private boolean mIsBalanced = true;
+        private boolean mShouldDisableOnFirstSection = false;
+
+        @Override
+        public void beginSection(String sectionName) {
+            mSections.add(sectionName);
+            mDepth++;
+            if (mShouldDisableOnFirstSection) {
+                FilterTrace.setEnabled(false);
+            }
+        }
+
+        @Override
+        public void endSection() {
+            mDepth--;
+            if (mDepth < 0) {
+                mIsBalanced = false;
+            }
+        }
+    }
+}
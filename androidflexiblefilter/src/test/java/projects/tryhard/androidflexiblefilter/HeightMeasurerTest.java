@@ -0,0 +1,99 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check heights of all the filters are taken in one pre-draw on the main thread, without a thread for every filter.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HeightMeasurerTest {
+    private static final int FILTER_COUNT = 20;
+
+    private FlexibleFilter<String> mFilter;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+    }
+
+    @Test
+    public void readyToTakeHeight_allFiltersTakenInOnePreDraw() {
+        int threadCount = Thread.activeCount();
+        for (int filterNum = 1; filterNum < FILTER_COUNT; filterNum++) {
+            mFilter.addFilter(filterNum, "ALL", -1);
+        }
+        for (int filterNum = 0; filterNum < FILTER_COUNT; filterNum++) {
+            mFilter.addFilterOption(filterNum, "Option" + filterNum, 1, 300, TestFilters.STRING_CALLBACK);
+        }
+        assertEquals(threadCount, Thread.activeCount());
+
+        // Shown to be measured until the heights are taken.
+        for (int filterNum = 0; filterNum < FILTER_COUNT; filterNum++) {
+            assertTrue(mFilter.getFilter(filterNum, String.class).isContainerVisible());
+        }
+
+        // The frame is skipped so hidden filters aren't drawn.
+        assertTrue(mFilter.getViewTreeObserver().dispatchOnPreDraw());
+        for (int filterNum = 0; filterNum < FILTER_COUNT; filterNum++) {
+            assertFalse(mFilter.getFilter(filterNum, String.class).isContainerVisible());
+        }
+
+        // Nothing is waiting any more, the frame is drawn.
+        assertFalse(mFilter.getViewTreeObserver().dispatchOnPreDraw());
+    }
+
+    @Test
+    public void open_measuresOffScreenAndKeepsTheHeight() {
+        for (int i = 0; i < 10; i++) {
+            mFilter.addFilterOption(0, "Option" + i, 1, 300, TestFilters.STRING_CALLBACK);
+        }
+        FilterHolder<String> filterHolder = mFilter.getFilter(0, String.class);
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        assertFalse(filterHolder.isContainerVisible());
+
+        // Shown and animated right away, without waiting for a frame to take the height.
+        mFilter.open();
+        assertTrue(filterHolder.isContainerVisible());
+        int height = filterHolder.getHeight();
+        assertTrue(height > 0);
+
+        // Closed and opened again, the height kept is used.
+        HistogramFilterMetrics metrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(metrics);
+        mFilter.close();
+        mFilter.open();
+        assertEquals(height, filterHolder.getHeight());
+        assertEquals(1, metrics.getHeightMeasures().getCount());
+        assertEquals(1, metrics.getHeightCacheHitCount());
+    }
+
+    @Test
+    public void open_measuresAgainAfterATextChanged() {
+        for (int i = 0; i < 10; i++) {
+            mFilter.addFilterOption(0, "Option" + i, 1, 300, TestFilters.STRING_CALLBACK);
+        }
+        FilterHolder<String> filterHolder = mFilter.getFilter(0, String.class);
+        mFilter.getViewTreeObserver().dispatchOnPreDraw();
+        mFilter.open();
+        mFilter.close();
+
+        HistogramFilterMetrics metrics = new HistogramFilterMetrics();
+        mFilter.setFilterMetrics(metrics);
+        // Only the count changes, the style and the texts of other options stay the same.
+        mFilter.updateCertainOption(filterHolder, "Option3", 123456789);
+        mFilter.open();
+        assertEquals(0, metrics.getHeightCacheHitCount());
+
+        // Nothing changed since.
+        mFilter.close();
+        mFilter.open();
+        assertEquals(1, metrics.getHeightCacheHitCount());
+    }
+}
@@ -0,0 +1,47 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramFilterMetricsTest {
+
+    @Test
+    public void histogram_percentilesAreWithinTheirBucket() {
+        HistogramFilterMetrics metrics = new HistogramFilterMetrics();
+        for (int i = 1; i <= 100; i++) {
+            metrics.filterUpdated(0, i * 1000L, 10, i % 2);
+        }
+        HistogramFilterMetrics.Histogram updates = metrics.getFilterUpdates();
+
+        assertEquals(100, updates.getCount());
+        assertEquals(50500, updates.getAverageNanos());
+        assertEquals(100000, updates.getMaxNanos());
+        long p50 = updates.getPercentileNanos(50);
+        assertTrue(p50 >= 50000 && p50 < 100000);
+        assertEquals(100000, updates.getPercentileNanos(100));
+        assertEquals(1000, metrics.getOptionCount());
+        assertEquals(50, metrics.getTouchedOptionCount());
+    }
+
+    @Test
+    public void cacheHits_areCountedAndReset() {
+        HistogramFilterMetrics metrics = new HistogramFilterMetrics();
+        metrics.autofitSolved(100, true);
+        metrics.autofitSolved(5000, false);
+        metrics.heightMeasured(0, 100, true);
+        metrics.animationFrame(true, 16000000);
+
+        assertEquals(2, metrics.getAutofitSolves().getCount());
+        assertEquals(1, metrics.getAutofitCacheHitCount());
+        assertEquals(1, metrics.getHeightCacheHitCount());
+        assertEquals(1, metrics.getOpenFrames().getCount());
+        assertEquals(0, metrics.getCloseFrames().getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getAutofitSolves().getCount());
+        assertEquals(0, metrics.getAutofitCacheHitCount());
+        assertEquals(0, metrics.getOpenFrames().getPercentileNanos(99));
+    }
+}
@@ -0,0 +1,85 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check the bitmap against {@link BitSet}, with groups small enough to be arrays and big enough to be bitmaps.
+ */
+public class IdBitmapTest {
+    private static final int MAX_ID = 300000;
+
+    @Test
+    public void addAndRemove_sameAsBitSet() {
+        Random random = new Random(1);
+        IdBitmap bitmap = new IdBitmap();
+        BitSet bitSet = new BitSet();
+        for (int i = 0; i < 200000; i++) {
+            int id = random.nextInt(MAX_ID);
+            if (random.nextInt(4) == 0) {
+                assertEquals(bitSet.get(id), bitmap.remove(id));
+                bitSet.clear(id);
+            } else {
+                assertEquals(!bitSet.get(id), bitmap.add(id));
+                bitSet.set(id);
+            }
+        }
+
+        assertEquals(bitSet.cardinality(), bitmap.cardinality());
+        assertSameIds(bitSet, bitmap);
+    }
+
+    @Test
+    public void and_sameAsBitSet() {
+        Random random = new Random(2);
+        // Dense, sparse and mixed groups.
+        IdBitmap dense = new IdBitmap();
+        IdBitmap sparse = new IdBitmap();
+        BitSet denseSet = new BitSet();
+        BitSet sparseSet = new BitSet();
+        for (int id = 0; id < MAX_ID; id++) {
+            if (random.nextInt(2) == 0) {
+                dense.add(id);
+                denseSet.set(id);
+            }
+            if (random.nextInt(id < MAX_ID / 2 ? 100 : 2) == 0) {
+                sparse.add(id);
+                sparseSet.set(id);
+            }
+        }
+
+        BitSet expected = (BitSet) denseSet.clone();
+        expected.and(sparseSet);
+        assertSameIds(expected, dense.and(sparse));
+        assertSameIds(expected, sparse.and(dense));
+        assertEquals(expected.cardinality(), dense.andCardinality(sparse));
+        assertEquals(expected.cardinality(), sparse.andCardinality(dense));
+    }
+
+    @Test
+    public void remove_lastIdRemovesGroup() {
+        IdBitmap bitmap = new IdBitmap();
+        bitmap.add(70000);
+        assertTrue(bitmap.remove(70000));
+
+        assertTrue(bitmap.isEmpty());
+        assertFalse(bitmap.contains(70000));
+        assertFalse(bitmap.iterator().hasNext());
+    }
+
+    private void assertSameIds(BitSet expected, IdBitmap bitmap) {
+        IdIterator iterator = bitmap.iterator();
+        for (int id = expected.nextSetBit(0); id >= 0; id = expected.nextSetBit(id + 1)) {
+            assertTrue(iterator.hasNext());
+            assertEquals(id, iterator.next());
+            assertTrue(bitmap.contains(id));
+        }
+        assertFalse(iterator.hasNext());
+    }
+}
@@ -0,0 +1,119 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check toggling options in multi-select mode reports what changed and only redraws the toggled options.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MultiSelectTest {
+    private static final int OPTION_COUNT = 10;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private List<List<String>> mSelected = new ArrayList<>();
+    private List<List<String>> mUnselected = new ArrayList<>();
+    private int mUnSelectedAllCount;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        mFilter.setShouldCloseAfterClick(false);
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            mFilter.addFilterOption(0, "Option" + i, i, 300, TestFilters.STRING_CALLBACK);
+        }
+        mFilter.setMultiSelect(0, true);
+        mFilterHolder = mFilter.getFilter(0, String.class);
+        mFilterHolder.setMultiSelectCallback(new FlexibleFilter.MultiSelectCallback<String>() {
+            @Override
+            public void filterSelectionChanged(int filterNum, List<String> selectedIds, List<String> unselectedIds) {
+                mSelected.add(new ArrayList<>(selectedIds));
+                mUnselected.add(new ArrayList<>(unselectedIds));
+            }
+        });
+        mFilterHolder.setFilterClickCallback(new FlexibleFilter.FilterClickCallback<String>() {
+            @Override
+            public void filterOptionClicked(int filterNum, String filterId) {
+
+            }
+
+            @Override
+            public void filterUnSelectedAll(int filterNum) {
+                mUnSelectedAllCount++;
+            }
+        });
+    }
+
+    @Test
+    public void toggleOption_reportsWhatChanged() {
+        mFilter.optionSelect(mFilterHolder, "Option2");
+        mFilter.optionSelect(mFilterHolder, "Option5");
+        mFilter.optionSelect(mFilterHolder, "Option2");
+
+        assertEquals(Arrays.asList(Collections.singletonList("Option2"), Collections.singletonList("Option5"),
+                Collections.<String>emptyList()), mSelected);
+        assertEquals(Arrays.asList(Collections.<String>emptyList(), Collections.<String>emptyList(),
+                Collections.singletonList("Option2")), mUnselected);
+        assertEquals(Collections.singletonList("Option5"), mFilterHolder.getSelectedFilterIds());
+        assertEquals("Option5", mFilterHolder.getCurrentSelected());
+    }
+
+    @Test
+    public void toggleAll_clearsEverySelection() {
+        mFilter.optionSelect(mFilterHolder, "Option1");
+        mFilter.optionSelect(mFilterHolder, "Option3");
+        mFilter.optionSelect(mFilterHolder, "Option7");
+        mSelected.clear();
+        mUnselected.clear();
+
+        mFilter.optionSelect(mFilterHolder, null);
+
+        assertEquals(Collections.singletonList(Collections.<String>emptyList()), mSelected);
+        assertEquals(Collections.singletonList(Arrays.asList("Option1", "Option3", "Option7")), mUnselected);
+        assertEquals(1, mUnSelectedAllCount);
+        assertTrue(mFilterHolder.getSelectedFilterIds().isEmpty());
+        assertNull(mFilterHolder.getCurrentSelected());
+        for (Option<String> option : mFilterHolder.getOptions()) {
+            assertFalse(option.getAutofitTextView().isSelected());
+        }
+    }
+
+    @Test
+    public void toggleAll_withNothingSelectedReportsNothing() {
+        mFilter.optionSelect(mFilterHolder, null);
+
+        assertTrue(mSelected.isEmpty());
+        assertEquals(1, mUnSelectedAllCount);
+    }
+
+    @Test
+    public void toggleOption_onlyRedrawsToggledOptions() {
+        mFilter.optionSelect(mFilterHolder, "Option1");
+        mFilter.optionSelect(mFilterHolder, "Option2");
+        TestFilters.StateChangeCounter counter = new TestFilters.StateChangeCounter();
+        counter.watch(mFilterHolder.getOptions());
+
+        mFilter.optionSelect(mFilterHolder, "Option3");
+        assertEquals(1, counter.mCount);
+
+        mFilter.optionSelect(mFilterHolder, "Option1");
+        assertEquals(2, counter.mCount);
+
+        // Option2 and Option3 are left.
+        mFilter.optionSelect(mFilterHolder, null);
+        assertEquals(4, counter.mCount);
+    }
+}
@@ -0,0 +1,136 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check options are found by their filterId, and only the options whose selection changed are redrawn.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OptionIndexTest {
+    private static final int OPTION_COUNT = 10;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private TestFilters.ErrorCounter mErrorCounter;
+
+    @Before
+    public void setUp() {
+        mErrorCounter = new TestFilters.ErrorCounter();
+        mFilter = TestFilters.newFilter(mErrorCounter);
+        mFilter.setShouldCloseAfterClick(false);
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            mFilter.addFilterOption(0, "Option" + i, i, 300, TestFilters.STRING_CALLBACK);
+        }
+        mFilterHolder = mFilter.getFilter(0, String.class);
+    }
+
+    @Test
+    public void getFilterButton_findsOptionsAddedLater() {
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        for (int i = OPTION_COUNT; i < OPTION_COUNT * 2; i++) {
+            optionSpecs.add(new OptionSpec<>("Option" + i, i, 300, TestFilters.STRING_CALLBACK));
+        }
+        mFilter.addFilterOptions(0, optionSpecs);
+
+        List<Option<String>> options = mFilterHolder.getOptions();
+        for (int i = 0; i < options.size(); i++) {
+            assertSame(options.get(i), mFilterHolder.getFilterButton(options.get(i).getFilterId()));
+            assertEquals(i, mFilterHolder.getOptionPosition(options.get(i).getFilterId()));
+        }
+    }
+
+    @Test
+    public void getFilterButton_keepsFirstOptionForDuplicateFilterId() {
+        Option<String> first = mFilterHolder.getFilterButton("Option3");
+        mFilter.addFilterOption(0, "Option3", 100, 300, TestFilters.STRING_CALLBACK);
+
+        assertSame(first, mFilterHolder.getFilterButton("Option3"));
+        // Options start after the default all option.
+        assertEquals(4, mFilterHolder.getOptionPosition("Option3"));
+        assertEquals(OPTION_COUNT + 2, mFilterHolder.getOptions().size());
+    }
+
+    @Test
+    public void getFilterButton_unknownIdGetsTheAllOption() {
+        assertEquals(-1, mFilterHolder.getOptionPosition("Missing"));
+        assertSame(mFilterHolder.getOptions().get(0), mFilterHolder.getFilterButton("Missing"));
+    }
+
+    @Test
+    public void getFilterButton_stillFindsOptionsOfARemovedFilter() {
+        mFilter.addFilter(1, "ALL", -1);
+        mFilter.addFilterOption(1, "Option", 1, 300, TestFilters.STRING_CALLBACK);
+        mFilter.removeFilter(0);
+
+        assertSame(mFilterHolder.getOptions().get(4), mFilterHolder.getFilterButton("Option3"));
+        assertEquals(1, mFilter.getFilter(1, String.class).getFilterButton("Option").getResultCount());
+    }
+
+    @Test
+    public void updateCounts_reportsUnknownIdAndUpdatesTheOthers() {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put("Option1", 50);
+        counts.put("Missing", 60);
+        mFilter.updateCounts(mFilterHolder, counts);
+
+        assertEquals(1, mErrorCounter.mFilterOptionNotExistErrorCount);
+        assertEquals(50, mFilterHolder.getFilterButton("Option1").getResultCount());
+        assertEquals("Option1(50)", mFilterHolder.getFilterButton("Option1").getAutofitTextView().getText().toString());
+        int sum = 0;
+        for (int i = 1; i < mFilterHolder.getOptions().size(); i++) {
+            sum += mFilterHolder.getOptions().get(i).getResultCount();
+        }
+        assertEquals(sum, mFilterHolder.getOptions().get(0).getResultCount());
+    }
+
+    @Test
+    public void updateCounts_knownIdsReportNothing() {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put("Option1", 50);
+        counts.put("Option2", 60);
+
+        assertTrue(mFilterHolder.updateCounts(counts));
+        mFilter.updateCounts(mFilterHolder, counts);
+        assertEquals(0, mErrorCounter.mFilterOptionNotExistErrorCount);
+
+        counts.put("Missing", 70);
+        assertFalse(mFilterHolder.updateCounts(counts));
+    }
+
+    @Test
+    public void setOptionsDeco_onlyRedrawsOldAndNewSelection() {
+        mFilter.optionSelect(mFilterHolder, "Option5");
+        TestFilters.StateChangeCounter counter = new TestFilters.StateChangeCounter();
+        counter.watch(mFilterHolder.getOptions());
+
+        mFilter.optionSelect(mFilterHolder, "Option3");
+
+        assertEquals(2, counter.mCount);
+        assertTrue(mFilterHolder.getFilterButton("Option3").getAutofitTextView().isSelected());
+        assertFalse(mFilterHolder.getFilterButton("Option5").getAutofitTextView().isSelected());
+    }
+
+    @Test
+    public void setOptionsDeco_sameSelectionRedrawsNothing() {
+        mFilter.optionSelect(mFilterHolder, "Option5");
+        TestFilters.StateChangeCounter counter = new TestFilters.StateChangeCounter();
+        counter.watch(mFilterHolder.getOptions());
+
+        mFilter.optionSelect(mFilterHolder, "Option5");
+
+        assertEquals(0, counter.mCount);
+    }
+}
@@ -0,0 +1,102 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check updating filters doesn't redo the text of options when nothing changed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OptionInvalidateTest {
+    private static final int OPTION_COUNT = 20;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+    private int mGetStringCount;
+    private int mSetTextCount;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+
+        FlexibleFilter.OptionGetStringCallback<String> callback = new FlexibleFilter.OptionGetStringCallback<String>() {
+            @Override
+            public String getString(String filterId, int count) {
+                mGetStringCount++;
+                return String.format(Locale.CHINESE, "%s(%d)", filterId, count);
+            }
+        };
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            mFilter.addFilterOption(0, "Option" + i, i, 300, callback);
+        }
+        mFilterHolder = mFilter.getFilter(0, String.class);
+
+        List<Option<String>> options = mFilterHolder.getOptions();
+        for (int i = 0; i < options.size(); i++) {
+            options.get(i).getAutofitTextView().addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {
+
+                }
+
+                @Override
+                public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
+                    mSetTextCount++;
+                }
+
+                @Override
+                public void afterTextChanged(Editable editable) {
+
+                }
+            });
+        }
+        mGetStringCount = 0;
+        mSetTextCount = 0;
+    }
+
+    @Test
+    public void updateAllFilters_doesNothingWhenNothingChanged() {
+        for (int i = 0; i < 5; i++) {
+            mFilter.updateAllFilters();
+        }
+
+        assertEquals(0, mGetStringCount);
+        assertEquals(0, mSetTextCount);
+    }
+
+    @Test
+    public void updateCertainOption_onlyRedoesChangedOptions() {
+        mFilter.updateCertainOption(mFilterHolder, "Option3", 100);
+        mFilter.updateAllFilters();
+
+        // The changed option and the default all option, since the sum changed.
+        assertEquals(2, mGetStringCount);
+        assertEquals(2, mSetTextCount);
+    }
+
+    @Test
+    public void updateCertainOption_skipsSetTextWhenTextIsSame() {
+        mFilter.updateCertainOption(mFilterHolder, "Option3", 3);
+
+        assertEquals(0, mGetStringCount);
+        assertEquals(0, mSetTextCount);
+    }
+
+    @Test
+    public void refreshOptionTexts_asksForTextsButKeepsSameTexts() {
+        mFilter.refreshOptionTexts();
+
+        assertEquals(mFilterHolder.getOptions().size(), mGetStringCount);
+        assertEquals(0, mSetTextCount);
+    }
+}
@@ -0,0 +1,81 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.content.res.ColorStateList;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check options of a filter share their style, and selecting an option only flips its state.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class OptionStyleCacheTest {
+    private static final int OPTION_COUNT = 5;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        mFilter.setShouldCloseAfterClick(false);
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            mFilter.addFilterOption(0, "Option" + i, i, 300, TestFilters.STRING_CALLBACK);
+        }
+        mFilterHolder = mFilter.getFilter(0, String.class);
+    }
+
+    @Test
+    public void options_shareConstantStatesAndTextColors() {
+        List<Option<String>> options = mFilterHolder.getOptions();
+        AutofitTextView first = options.get(1).getAutofitTextView();
+        for (int i = 2; i < options.size(); i++) {
+            AutofitTextView view = options.get(i).getAutofitTextView();
+            // Every option has its own background, but the drawables in it share their state.
+            assertNotSame(first.getBackground(), view.getBackground());
+            assertSame(first.getBackground().getCurrent().getConstantState(), view.getBackground().getCurrent().getConstantState());
+            assertSame(first.getTextColors(), view.getTextColors());
+        }
+    }
+
+    @Test
+    public void selectedOptions_shareConstantStates() {
+        mFilter.optionSelect(mFilterHolder, "Option1");
+        Drawable first = mFilterHolder.getFilterButton("Option1").getAutofitTextView().getBackground().getCurrent();
+        mFilter.optionSelect(mFilterHolder, "Option2");
+        Drawable second = mFilterHolder.getFilterButton("Option2").getAutofitTextView().getBackground().getCurrent();
+
+        assertSame(first.getConstantState(), second.getConstantState());
+    }
+
+    @Test
+    public void optionSelect_onlyFlipsTheSelectedState() {
+        AutofitTextView view = mFilterHolder.getFilterButton("Option3").getAutofitTextView();
+        Drawable background = view.getBackground();
+        ColorStateList textColors = view.getTextColors();
+        Drawable.ConstantState unSelectedState = background.getCurrent().getConstantState();
+
+        mFilter.optionSelect(mFilterHolder, "Option3");
+
+        assertTrue(view.isSelected());
+        assertSame(background, view.getBackground());
+        assertSame(textColors, view.getTextColors());
+        assertNotSame(unSelectedState, background.getCurrent().getConstantState());
+
+        mFilter.optionSelect(mFilterHolder, "Option4");
+
+        assertFalse(view.isSelected());
+        assertSame(background, view.getBackground());
+        assertSame(unSelectedState, background.getCurrent().getConstantState());
+    }
+}
@@ -0,0 +1,110 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check only options on the first screen are shown when opening, and the rest are shown in order after it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProgressiveOpenTest {
+    private static final int OPTION_COUNT = 300;
+    private static final int WIDTH = 1000;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter();
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            optionSpecs.add(new OptionSpec<>("Option" + i, 1, WIDTH / 4, TestFilters.STRING_CALLBACK));
+        }
+        mFilter.addFilterOptions(0, optionSpecs);
+        mFilterHolder = mFilter.getFilter(0, String.class);
+    }
+
+    @Test
+    public void deferOptionsAfterFirstScreen_hidesOptionsBelowIt() {
+        // Only the first row fits.
+        int deferredCount = mFilterHolder.deferOptionsAfterFirstScreen(WIDTH, 1);
+
+        List<Option<String>> options = mFilterHolder.getOptions();
+        int firstDeferred = getFirstDeferred(options);
+        assertTrue(firstDeferred > 0);
+        assertTrue(firstDeferred < 10);
+        assertEquals(options.size() - firstDeferred, deferredCount);
+        for (int i = 0; i < options.size(); i++) {
+            assertEquals(i >= firstDeferred, options.get(i).isDeferred());
+            assertTrue(options.get(i).isVisible());
+        }
+    }
+
+    @Test
+    public void revealNextOption_showsHiddenOptionsInOrder() {
+        int deferredCount = mFilterHolder.deferOptionsAfterFirstScreen(WIDTH, 1);
+        List<Option<String>> options = mFilterHolder.getOptions();
+
+        int firstDeferred = getFirstDeferred(options);
+        for (int i = firstDeferred; i < firstDeferred + deferredCount; i++) {
+            assertTrue(mFilterHolder.revealNextOption());
+            assertTrue(options.get(i).isShown());
+            if (i + 1 < options.size()) {
+                assertTrue(options.get(i + 1).isDeferred());
+            }
+        }
+        assertFalse(mFilterHolder.revealNextOption());
+    }
+
+    @Test
+    public void revealAllOptions_showsEverything() {
+        mFilterHolder.deferOptionsAfterFirstScreen(WIDTH, 1);
+        mFilterHolder.revealAllOptions();
+
+        for (Option<String> option : mFilterHolder.getOptions()) {
+            assertFalse(option.isDeferred());
+        }
+    }
+
+    @Test
+    public void close_whileRevealingShowsTheRest() {
+        mFilter.setOpeningFilterOne(0);
+        mFilter.setProgressiveOpen(true);
+        mFilter.open();
+        assertTrue(getFirstDeferred(mFilterHolder.getOptions()) > 0);
+
+        mFilter.close();
+
+        assertEquals(-1, getFirstDeferred(mFilterHolder.getOptions()));
+    }
+
+    @Test
+    public void open_withoutProgressiveModeShowsOptionsLeftHidden() {
+        mFilter.setOpeningFilterOne(0);
+        mFilterHolder.deferOptionsAfterFirstScreen(WIDTH, 1);
+        mFilter.setProgressiveOpen(false);
+
+        mFilter.open();
+
+        assertEquals(-1, getFirstDeferred(mFilterHolder.getOptions()));
+    }
+
+    private static int getFirstDeferred(List<Option<String>> options) {
+        for (int i = 0; i < options.size(); i++) {
+            if (options.get(i).isDeferred()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
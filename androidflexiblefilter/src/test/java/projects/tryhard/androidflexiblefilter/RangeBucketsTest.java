@@ -0,0 +1,69 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Check buckets found by binary search and counts summed by the Fenwick tree against counting by hand.
+ */
+public class RangeBucketsTest {
+
+    @Test
+    public void getBucket_edgeGoesToTheBucketItStarts() {
+        RangeBuckets buckets = RangeBuckets.ofEdges(0, 20, Double.POSITIVE_INFINITY);
+
+        assertEquals(Arrays.asList(new NumericRange(0, 20), new NumericRange(20, Double.POSITIVE_INFINITY)), buckets.getRanges());
+        assertEquals("0-20", buckets.getRanges().get(0).toString());
+        assertEquals("20-", buckets.getRanges().get(1).toString());
+        assertEquals(0, buckets.getBucket(0));
+        assertEquals(0, buckets.getBucket(19.5));
+        assertEquals(1, buckets.getBucket(20));
+        assertEquals(-1, buckets.getBucket(-1));
+        assertEquals(-1, buckets.getBucket(Double.NaN));
+        assertEquals(1, buckets.getBucket(buckets.getRanges().get(1)));
+        assertEquals(-1, buckets.getBucket(new NumericRange(0, 10)));
+    }
+
+    @Test
+    public void equalWidth_lastBucketHasMax() {
+        RangeBuckets buckets = RangeBuckets.equalWidth(0, 10, 4);
+
+        assertEquals(4, buckets.getBucketCount());
+        assertEquals(new NumericRange(2.5, 5), buckets.getRanges().get(1));
+        assertEquals(3, buckets.getBucket(10));
+        assertEquals(-1, buckets.getBucket(10.5));
+    }
+
+    @Test
+    public void quantile_repeatedValuesStayInOneBucket() {
+        RangeBuckets buckets = RangeBuckets.quantile(new double[]{5, 1, 3, 3, 3, 9, 7, 2, Double.NaN}, 3);
+
+        assertEquals(Arrays.asList(new NumericRange(1, 3), new NumericRange(3, 5), new NumericRange(5, 9)), buckets.getRanges());
+        assertEquals(1, RangeBuckets.quantile(new double[]{4, 4, 4}, 2).getBucketCount());
+    }
+
+    @Test
+    public void fenwickTree_sameAsSummingByHand() {
+        Random random = new Random(1);
+        FenwickTree tree = new FenwickTree(50);
+        int[] counts = new int[50];
+        for (int i = 0; i < 10000; i++) {
+            int bucket = random.nextInt(counts.length);
+            int delta = random.nextInt(7) - 3;
+            tree.add(bucket, delta);
+            counts[bucket] += delta;
+
+            int start = random.nextInt(counts.length + 1);
+            int end = random.nextInt(counts.length + 1);
+            int sum = 0;
+            for (int j = start; j < end; j++) {
+                sum += counts[j];
+            }
+            assertEquals(sum, tree.rangeSum(start, end));
+        }
+    }
+}
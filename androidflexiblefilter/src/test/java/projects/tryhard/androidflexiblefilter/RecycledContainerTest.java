@@ -0,0 +1,58 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Check options in recycled mode don't create views until they are bound, and hidden options are left out.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RecycledContainerTest {
+    private static final int OPTION_COUNT = 5000;
+
+    private FlexibleFilter<String> mFilter;
+    private FilterHolder<String> mFilterHolder;
+
+    @Before
+    public void setUp() {
+        mFilter = TestFilters.newFilter(0, FlexibleFilter.ContainerMode.RECYCLED);
+        List<OptionSpec<String>> optionSpecs = new ArrayList<>();
+        for (int i = 0; i < OPTION_COUNT; i++) {
+            optionSpecs.add(new OptionSpec<>("Option" + i, i % 2, 300, TestFilters.STRING_CALLBACK));
+        }
+        mFilter.addFilterOptions(0, optionSpecs);
+        mFilterHolder = mFilter.getFilter(0, String.class);
+    }
+
+    @Test
+    public void addFilterOptions_doesNotCreateViews() {
+        List<Option<String>> options = mFilterHolder.getOptions();
+        assertEquals(OPTION_COUNT + 1, options.size());
+        for (int i = 0; i < options.size(); i++) {
+            assertNull(options.get(i).getAutofitTextView());
+        }
+        // Only the empty view and the recycler view.
+        assertEquals(2, mFilterHolder.getContainer().getChildCount());
+        assertTrue(mFilterHolder.getContainer().getChildAt(1) instanceof OptionRecyclerView);
+    }
+
+    @Test
+    public void hideZeroFilters_leavesHiddenOptionsOut() {
+        OptionRecyclerView recyclerView = (OptionRecyclerView) mFilterHolder.getContainer().getChildAt(1);
+        assertEquals(OPTION_COUNT + 1, recyclerView.getAdapter().getItemCount());
+
+        mFilter.setShouldHideZeroFilters(true);
+
+        // Half of the options have zero count, the all option is still there.
+        assertEquals(OPTION_COUNT / 2 + 1, recyclerView.getAdapter().getItemCount());
+    }
+}
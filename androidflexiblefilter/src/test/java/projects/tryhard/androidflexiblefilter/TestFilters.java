@@ -0,0 +1,101 @@
+package projects.tryhard.androidflexiblefilter;
+
+import android.graphics.drawable.ColorDrawable;
+
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filters and callbacks set up the same way by every test.
+ */
+final class TestFilters {
+    /**
+     * Text of an option is its filterId and count, e.g. "Option3(3)".
+     */
+    static final FlexibleFilter.OptionGetStringCallback<String> STRING_CALLBACK = new FlexibleFilter.OptionGetStringCallback<String>() {
+        @Override
+        public String getString(String filterId, int count) {
+            return String.format(Locale.CHINESE, "%s(%d)", filterId, count);
+        }
+    };
+
+    private TestFilters() {
+    }
+
+    /**
+     * @return A filter with the default filter 0 and its all option "ALL", errors are ignored.
+     */
+    static FlexibleFilter<String> newFilter() {
+        return newFilter(new ErrorCounter());
+    }
+
+    static FlexibleFilter<String> newFilter(FlexibleFilter.FilterErrorCallback filterErrorCallback) {
+        return init(new FlexibleFilter<String>(RuntimeEnvironment.application), 0, FlexibleFilter.ContainerMode.FLEXBOX,
+                filterErrorCallback);
+    }
+
+    static FlexibleFilter<String> newFilter(int filterNum, FlexibleFilter.ContainerMode containerMode) {
+        return init(new FlexibleFilter<String>(RuntimeEnvironment.application), filterNum, containerMode, new ErrorCounter());
+    }
+
+    /**
+     * Init a filter made by the test, e.g. a subclass of it.
+     */
+    static <F extends FlexibleFilter<String>> F init(F filter, int filterNum, FlexibleFilter.ContainerMode containerMode,
+                                                     FlexibleFilter.FilterErrorCallback filterErrorCallback) {
+        filter.init(RuntimeEnvironment.application, filterNum, -1, "ALL", containerMode, filterErrorCallback);
+        return filter;
+    }
+
+    /**
+     * Counts every error reported.
+     */
+    static final class ErrorCounter implements FlexibleFilter.FilterErrorCallback {
+        int mNoSuchFilterErrorCount = 0;
+        int mFilterOptionNotExistErrorCount = 0;
+        int mCastFailedCount = 0;
+
+        @Override
+        public void noSuchFilterError(int notExistFilterNum) {
+            mNoSuchFilterErrorCount++;
+        }
+
+        @Override
+        public void filterOptionNotExistError() {
+            mFilterOptionNotExistErrorCount++;
+        }
+
+        @Override
+        public void castFailed() {
+            mCastFailedCount++;
+        }
+    }
+
+    /**
+     * Counts how many times options are redrawn as selected or unselected. Backgrounds of the options are swapped
+     * for ones counting their state changes, the style isn't set again since it doesn't change.
+     */
+    static final class StateChangeCounter {
+        int mCount = 0;
+
+        void watch(List<? extends Option<?>> options) {
+            for (int i = 0; i < options.size(); i++) {
+                options.get(i).getAutofitTextView().setBackground(new ColorDrawable() {
+                    @Override
+                    public boolean isStateful() {
+                        return true;
+                    }
+
+                    @Override
+                    protected boolean onStateChange(int[] state) {
+                        mCount++;
+                        return super.onStateChange(state);
+                    }
+                });
+            }
+            mCount = 0;
+        }
+    }
+}
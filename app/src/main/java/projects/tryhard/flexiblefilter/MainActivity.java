@@ -24,8 +24,11 @@ import java.util.Locale;
 import java.util.Objects;
 import java.util.Random;
 
+import projects.tryhard.androidflexiblefilter.FacetEngine;
 import projects.tryhard.androidflexiblefilter.FilterHolder;
 import projects.tryhard.androidflexiblefilter.FlexibleFilter;
+import projects.tryhard.androidflexiblefilter.NumericRange;
+import projects.tryhard.androidflexiblefilter.RangeBuckets;
 
 public class MainActivity extends AppCompatActivity {
 
@@ -39,6 +42,7 @@ public class MainActivity extends AppCompatActivity {
     List<Human> mHumanList;
     RecyclerView mHumanRV;
     HumanAdapter mHumanAdapter;
+    FacetEngine<Human> mHumanFacetEngine;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -156,7 +160,7 @@ public class MainActivity extends AppCompatActivity {
                         break;
                     case "ToggleTextCount":
                         toggleFilter2ShouldShowCount();
-                        mFilter2.updateAllFilters();
+                        mFilter2.refreshOptionTexts();
                         break;
                     case "Toggle0Count":
                         mFilter2.setShouldHideZeroFilters(!mFilter2.isShouldHideZeroFilters());
@@ -348,83 +352,39 @@ public class MainActivity extends AppCompatActivity {
             }
         });
 
+        final String[] currentFilterIds = new String[]{"", ""};
         FlexibleFilter.FilterClickCallback<String> callback = new FlexibleFilter.FilterClickCallback<String>() {
-            private String currentFilter1Id = "";
-            private String currentFilter2Id = "";
-            private List<Human> currentList = mHumanList;
-            TextView title;
-
             @Override
             public void filterOptionClicked(int filterNum, String filterId) {
-                title = mFilter4.getTitleView().findViewById(R.id.filter_title);
-                if (filterNum == filter4_1filterNum) {
-
-                    FilterHolder<String> filterHolder1 = mFilter4.getFilter(filter4_1filterNum, String.class);
-                    FilterHolder<String> filterHolder2 = mFilter4.getFilter(filter4_2filterNum, String.class);
-
-                    List<Human> manLists = getSexList("Men");
-                    List<Human> womanLists = getSexList("Women");
-                    switch (filterId) {
-                        case "ALL":
-                            currentList = new ArrayList<>(mHumanList);
-                            mFilter4.updateCertainOption(filterHolder2, "0-20", get0To20List(currentList).size());
-                            mFilter4.updateCertainOption(filterHolder2, "20-", getAbove20List(currentList).size());
-                            mHumanAdapter.replace(currentList);
-                            break;
-                        case "Men":
-                            currentList = new ArrayList<>(manLists);
-                            mFilter4.updateCertainOption(filterHolder2, "0-20", get0To20List(currentList).size());
-                            mFilter4.updateCertainOption(filterHolder2, "20-", getAbove20List(currentList).size());
-                            mHumanAdapter.replace(currentList);
-                            break;
-                        case "Women":
-                            currentList = new ArrayList<>(womanLists);
-                            mFilter4.updateCertainOption(filterHolder2, "0-20", get0To20List(currentList).size());
-                            mFilter4.updateCertainOption(filterHolder2, "20-", getAbove20List(currentList).size());
-                            mHumanAdapter.replace(currentList);
-                            break;
-                    }
-
-                    if(currentFilter1Id != filterId){
-                        // If user click a different option with current option, refresh filter on the right.
-                        mFilter4.optionSelect(filterHolder2, null);
-                    }
-
-                    currentFilter1Id = filterId;
-
-                } else if (filterNum == filter4_2filterNum) {
-                    currentFilter2Id = filterId;
-
-                    List<Human> year0To20Human = get0To20List(currentList);
-                    List<Human> yearAbove20Human = getAbove20List(currentList);
-                    switch (filterId) {
-                        case "ALL":
-                            mHumanAdapter.replace(currentList);
-                            break;
-                        case "0-20":
-                            mHumanAdapter.replace(year0To20Human);
-                            break;
-                        case "20-":
-                            mHumanAdapter.replace(yearAbove20Human);
-                            break;
-                    }
-                }
-                title.setText(String.format(Locale.CHINESE, "Filter1: %s, Filter2: %s", currentFilter1Id, currentFilter2Id));
+                currentFilterIds[0] = filterId;
+                // Counts of the other filter are already updated by the engine.
+                showHumans(currentFilterIds);
             }
 
             @Override
             public void filterUnSelectedAll(int filterNum) {
-                if(filterNum == filter4_2filterNum){
-                    currentFilter2Id = "";
-                    mHumanAdapter.replace(currentList);
-                }
-                title.setText(String.format(Locale.CHINESE, "Filter1: %s, Filter2: %s", currentFilter1Id, currentFilter2Id));
+                currentFilterIds[0] = "";
+                showHumans(currentFilterIds);
+            }
+        };
+        FlexibleFilter.FilterClickCallback<NumericRange> ageCallback = new FlexibleFilter.FilterClickCallback<NumericRange>() {
+            @Override
+            public void filterOptionClicked(int filterNum, NumericRange filterId) {
+                currentFilterIds[1] = filterId.toString();
+                showHumans(currentFilterIds);
             }
 
+            @Override
+            public void filterUnSelectedAll(int filterNum) {
+                currentFilterIds[1] = "";
+                showHumans(currentFilterIds);
+            }
         };
-        mFilter4.addFilter(filter4_2filterNum, "ALL", -1);
+        // Ages are counted by buckets, the default all option covers every number.
+        RangeBuckets ageBuckets = RangeBuckets.ofEdges(0, 20, Double.POSITIVE_INFINITY);
+        mFilter4.addFilter(filter4_2filterNum, new NumericRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY), -1);
         mFilter4.getFilter(filter4_1filterNum, String.class).setFilterClickCallback(callback);
-        mFilter4.getFilter(filter4_2filterNum, String.class).setFilterClickCallback(callback);
+        mFilter4.getFilter(filter4_2filterNum, NumericRange.class).setFilterClickCallback(ageCallback);
         mFilter4.setFilterColCount(2);
         mFilter4.setOpeningFilters(new ArrayList<Integer>() {{
             add(filter4_1filterNum);
@@ -438,11 +398,34 @@ public class MainActivity extends AppCompatActivity {
             }
         };
 
-        mFilter4.addFilterOption(filter4_1filterNum, "Men", getSexList("Men").size(), getScreenWidthPixel(this) / 2, optionGetStringCallback4);
-        mFilter4.addFilterOption(filter4_1filterNum, "Women", getSexList("Women").size(), getScreenWidthPixel(this) / 2, optionGetStringCallback4);
+        // Counts are given by the engine.
+        mFilter4.addFilterOption(filter4_1filterNum, "Men", 0, getScreenWidthPixel(this) / 2, optionGetStringCallback4);
+        mFilter4.addFilterOption(filter4_1filterNum, "Women", 0, getScreenWidthPixel(this) / 2, optionGetStringCallback4);
+
+        FlexibleFilter.OptionGetStringCallback<NumericRange> ageGetStringCallback = new FlexibleFilter.OptionGetStringCallback<NumericRange>() {
+            @Override
+            public String getString(NumericRange filterId, int count) {
+                return String.format(Locale.CHINESE, "%s(%d)", filterId, count);
+            }
+        };
+        for (NumericRange range : ageBuckets.getRanges()) {
+            mFilter4.addFilterOption(filter4_2filterNum, range, 0, getScreenWidthPixel(this) / 2, ageGetStringCallback);
+        }
 
-        mFilter4.addFilterOption(filter4_2filterNum, "0-20", get0To20List(mHumanList).size(), getScreenWidthPixel(this) / 2, optionGetStringCallback4);
-        mFilter4.addFilterOption(filter4_2filterNum, "20-", getAbove20List(mHumanList).size(), getScreenWidthPixel(this) / 2, optionGetStringCallback4);
+        mHumanFacetEngine = new FacetEngine<>(mFilter4);
+        mHumanFacetEngine.addFacet(filter4_1filterNum, String.class, new FacetEngine.KeyExtractor<Human, String>() {
+            @Override
+            public String getKey(Human human) {
+                return human.getSex();
+            }
+        });
+        mHumanFacetEngine.addRangeFacet(filter4_2filterNum, ageBuckets, new FacetEngine.ValueExtractor<Human>() {
+            @Override
+            public double getValue(Human human) {
+                return human.getAge();
+            }
+        });
+        mHumanFacetEngine.setItems(mHumanList);
 
         mFilter4.open();
 
@@ -454,32 +437,17 @@ public class MainActivity extends AppCompatActivity {
         mFilter2.addFilterOption(0, (mFilter2.getFilter(0, String.class).getAllFilterIds().size() - 6) + "", count, getScreenWidthPixel(this) / 3, optionGetStringCallback2);
     }
 
-    private void toggleFilter2ShouldShowCount() {
-        filter2ShowCount = !filter2ShowCount;
+    /**
+     * Show humans match both filters of filter 4, and what's selected in the title.
+     */
+    private void showHumans(String[] currentFilterIds) {
+        mHumanAdapter.replace(mHumanFacetEngine.getMatchingItems());
+        TextView title = mFilter4.getTitleView().findViewById(R.id.filter_title);
+        title.setText(String.format(Locale.CHINESE, "Filter1: %s, Filter2: %s", currentFilterIds[0], currentFilterIds[1]));
     }
 
-    private List<Human> getSexList(String sex) {
-        List<Human> list = new ArrayList<>();
-        for (int i = 0; i < mHumanList.size(); i++) {
-            if (mHumanList.get(i).getSex().equals(sex)) list.add(mHumanList.get(i));
-        }
-        return list;
-    }
-
-    private List<Human> get0To20List(List<Human> humanList) {
-        List<Human> list = new ArrayList<>();
-        for (int i = 0; i < humanList.size(); i++) {
-            if (humanList.get(i).getAge() <= 20) list.add(humanList.get(i));
-        }
-        return list;
-    }
-
-    private List<Human> getAbove20List(List<Human> humanList) {
-        List<Human> list = new ArrayList<>();
-        for (int i = 0; i < humanList.size(); i++) {
-            if (humanList.get(i).getAge() > 20) list.add(humanList.get(i));
-        }
-        return list;
+    private void toggleFilter2ShouldShowCount() {
+        filter2ShowCount = !filter2ShowCount;
     }
 
     private class Human {
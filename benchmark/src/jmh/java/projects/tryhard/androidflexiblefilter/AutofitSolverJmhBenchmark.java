@@ -0,0 +1,71 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fitting the text size of every option of a filter. Text is measured by a fixed width per character,
+ * so only the solver is measured, not the text layout of Android. The androidTest AutofitSolverBenchmark
+ * runs it on a device with real text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AutofitSolverJmhBenchmark {
+    private static final int TARGET_WIDTH = 200;
+    private static final float MAX_TEXT_SIZE = 48;
+    private static final float PRECISION = 0.5f;
+    /**
+     * Width of a character for a text size of 1.
+     */
+    private static final float CHAR_WIDTH = 0.55f;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int optionCount;
+
+    @Param({"1", "2"})
+    public int maxLines;
+
+    private AutofitSolver mSolver;
+    private String[] mTexts;
+    private AutofitSolver.TextMeasurer mTextMeasurer = new AutofitSolver.TextMeasurer() {
+        @Override
+        public float measureWidth(CharSequence text, float textSize) {
+            return text.length() * CHAR_WIDTH * textSize;
+        }
+
+        @Override
+        public int measureLines(CharSequence text, float textSize, int width, float[] outMaxLineWidth) {
+            int charsPerLine = Math.max(1, (int) (width / (CHAR_WIDTH * textSize)));
+            int lineCount = (text.length() + charsPerLine - 1) / charsPerLine;
+            outMaxLineWidth[0] = Math.min(text.length(), charsPerLine) * CHAR_WIDTH * textSize;
+            return lineCount;
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mSolver = new AutofitSolver();
+        mTexts = new String[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            mTexts[i] = "Option " + i + "(" + (i * 37 % 1000) + ")";
+        }
+    }
+
+    @Benchmark
+    public float solveAllOptions() {
+        float sum = 0;
+        for (int i = 0; i < optionCount; i++) {
+            sum += mSolver.solve(mTextMeasurer, mTexts[i], TARGET_WIDTH, maxLines, MAX_TEXT_SIZE, PRECISION);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,109 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bitmap and Fenwick tree work behind a selection change of FacetEngine: counting items matching two selected
+ * options, building the union of a multi-selection, and keeping range counts in a Fenwick tree.
+ * FacetEngine itself needs the views, it's timed by FilterMacroBenchmark.
+ * Items are spread over the options of two facets.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FacetCountBenchmark {
+    private static final int ITEM_COUNT = 100000;
+    /**
+     * Options picked at once in multi-select.
+     */
+    private static final int MULTI_SELECT_COUNT = 5;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int optionCount;
+
+    private IdBitmap[] mFirstPostings;
+    private IdBitmap[] mSecondPostings;
+    private FenwickTree mBucketCounts;
+    private RangeBuckets mRangeBuckets;
+    private double[] mValues;
+    private Random mRandom;
+
+    @Setup
+    public void setUp() {
+        mRandom = new Random(1);
+        mFirstPostings = newPostings();
+        mSecondPostings = newPostings();
+        mRangeBuckets = RangeBuckets.equalWidth(0, ITEM_COUNT, optionCount);
+        mBucketCounts = new FenwickTree(optionCount);
+        mValues = new double[ITEM_COUNT];
+        for (int item = 0; item < ITEM_COUNT; item++) {
+            mFirstPostings[mRandom.nextInt(optionCount)].add(item);
+            // Skewed, so some options are big enough to be bitmaps.
+            mSecondPostings[(int) (optionCount * Math.pow(mRandom.nextDouble(), 3))].add(item);
+            mValues[item] = mRandom.nextInt(ITEM_COUNT);
+            mBucketCounts.add(mRangeBuckets.getBucket(mValues[item]), 1);
+        }
+    }
+
+    /**
+     * Count of an option while an option of the other facet is selected.
+     */
+    @Benchmark
+    public int selectionCount() {
+        return mFirstPostings[mRandom.nextInt(optionCount)].andCardinality(mSecondPostings[mRandom.nextInt(optionCount)]);
+    }
+
+    /**
+     * Items matching a selection of both facets.
+     */
+    @Benchmark
+    public IdBitmap selectionIntersect() {
+        return mFirstPostings[mRandom.nextInt(optionCount)].and(mSecondPostings[mRandom.nextInt(optionCount)]);
+    }
+
+    /**
+     * Items matching any of the options picked in multi-select.
+     */
+    @Benchmark
+    public IdBitmap multiSelectUnion() {
+        List<IdBitmap> selected = new ArrayList<>(MULTI_SELECT_COUNT);
+        for (int i = 0; i < MULTI_SELECT_COUNT; i++) {
+            selected.add(mSecondPostings[mRandom.nextInt(optionCount)]);
+        }
+        return IdBitmap.or(selected);
+    }
+
+    /**
+     * An item changes its number, then a range of buckets is counted.
+     */
+    @Benchmark
+    public int rangeCountUpdate() {
+        int item = mRandom.nextInt(ITEM_COUNT);
+        mBucketCounts.add(mRangeBuckets.getBucket(mValues[item]), -1);
+        mValues[item] = mRandom.nextInt(ITEM_COUNT);
+        mBucketCounts.add(mRangeBuckets.getBucket(mValues[item]), 1);
+
+        int start = mRandom.nextInt(optionCount);
+        return mBucketCounts.rangeSum(start, Math.min(optionCount, start + optionCount / 4 + 1));
+    }
+
+    private IdBitmap[] newPostings() {
+        IdBitmap[] postings = new IdBitmap[optionCount];
+        for (int i = 0; i < optionCount; i++) {
+            postings[i] = new IdBitmap();
+        }
+        return postings;
+    }
+}
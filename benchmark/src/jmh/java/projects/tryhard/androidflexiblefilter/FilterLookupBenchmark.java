@@ -0,0 +1,73 @@
+package projects.tryhard.androidflexiblefilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding a filter by filterNum, what getFilter does on every update and click.
+ * The linear scan is how filters were found before {@link FilterIndex}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilterLookupBenchmark {
+    @Param({"1", "10", "100"})
+    public int filterCount;
+
+    private FilterIndex mFilterIndex;
+    private List<FilterHolder> mFilters;
+    private int[] mFilterNums;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        mFilterIndex = new FilterIndex();
+        mFilters = new ArrayList<>();
+        mFilterNums = new int[filterCount];
+        for (int i = 0; i < filterCount; i++) {
+            int filterNum = random.nextInt(10000);
+            while (mFilterIndex.get(filterNum) != null) {
+                filterNum = random.nextInt(10000);
+            }
+            FilterHolder filterHolder = new FilterHolder(filterNum);
+            mFilterIndex.put(filterNum, filterHolder);
+            mFilters.add(filterHolder);
+            mFilterNums[i] = filterNum;
+        }
+    }
+
+    @Benchmark
+    public FilterHolder getFilter() {
+        return mFilterIndex.get(nextFilterNum());
+    }
+
+    @Benchmark
+    public FilterHolder getFilterLinearScan() {
+        int filterNum = nextFilterNum();
+        for (int i = 0; i < mFilters.size(); i++) {
+            if (mFilters.get(i).getFilterNum() == filterNum) {
+                return mFilters.get(i);
+            }
+        }
+        return null;
+    }
+
+    private int nextFilterNum() {
+        if (++mNext == mFilterNums.length) {
+            mNext = 0;
+        }
+        return mFilterNums[mNext];
+    }
+}
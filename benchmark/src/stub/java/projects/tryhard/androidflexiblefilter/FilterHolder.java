@@ -0,0 +1,16 @@
+package projects.tryhard.androidflexiblefilter;
+
+/**
+ * Stands for the real filter in benchmarks, {@link FilterIndex} only keeps it.
+ */
+public class FilterHolder<T> {
+    private int mFilterNum;
+
+    public FilterHolder(int filterNum) {
+        this.mFilterNum = filterNum;
+    }
+
+    public int getFilterNum() {
+        return mFilterNum;
+    }
+}